@@ -1,10 +1,12 @@
 package net.shiroha233.roadweaver.achievements;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.core.BlockPos;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.RoadShardStorage;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 
 import java.util.*;
@@ -16,48 +18,60 @@ public final class AchievementService {
     private static final ResourceLocation ADV_FIRST_1 = new ResourceLocation("roadweaver", "road_first_step_1");
     private static final ResourceLocation ADV_FIRST_2 = new ResourceLocation("roadweaver", "road_first_step_2");
 
-    // 每个维度缓存道路的 XZ 哈希集合，避免每 Tick 反复遍历列表
-    private static final Map<ServerLevel, Set<Long>> ROAD_INDEX = new ConcurrentHashMap<>();
-    private static final Map<ServerLevel, Integer> ROAD_COUNT = new ConcurrentHashMap<>();
+    // 每个维度缓存道路的 XZ 哈希集合，避免每 Tick 反复遍历列表；按玩家所在区域的分片增量补录
+    private static final Map<ServerLevel, LevelIndex> ROAD_INDEX = new ConcurrentHashMap<>();
+
+    private static final class LevelIndex {
+        private final LongOpenHashSet columns = new LongOpenHashSet();
+        // 每个分片已索引的道路数，只补录尾部新增部分
+        private final Map<RoadShardStorage.Shard, Integer> indexedCount = new IdentityHashMap<>();
+        private RoadShardStorage storage;
+        private int generation;
+    }
 
     public static void tick(ServerLevel level) {
         if (level == null) return;
-        ensureIndex(level);
-        Set<Long> index = ROAD_INDEX.get(level);
-        if (index == null || index.isEmpty()) return;
+        // 已归档区域的道路不在内存索引中，直接查询归档
+        RoadShardStorage storage = WorldDataProvider.getInstance().getRoadStorage(level);
+        if (storage.isEmpty()) return;
+        boolean archived = storage.hasArchives();
+        LevelIndex index = ROAD_INDEX.computeIfAbsent(level, l -> new LevelIndex());
         for (ServerPlayer sp : level.getServer().getPlayerList().getPlayers()) {
             if (sp == null || sp.serverLevel() != level) continue;
             BlockPos feet = sp.blockPosition();
+            sync(index, storage, RoadShardStorage.regionKey(feet.getX(), feet.getZ()));
             // 站立判定：优先脚下方块 XZ
             long key = hashXZ(feet.getX(), feet.getZ());
             long keyBelow = hashXZ(feet.getX(), feet.getZ());
-            if (index.contains(key) || index.contains(keyBelow)) {
+            if (index.columns.contains(key) || index.columns.contains(keyBelow)
+                    || (archived && storage.archivedColumn(feet.getX(), feet.getZ()))) {
                 award(sp, ADV_FIRST_1, "entered_road");
                 award(sp, ADV_FIRST_2, "entered_road");
             }
         }
     }
 
-    private static void ensureIndex(ServerLevel level) {
-        WorldDataProvider provider = WorldDataProvider.getInstance();
-        java.util.List<Records.RoadData> list = provider.getRoadDataList(level);
-        int size = (list == null) ? 0 : list.size();
-        Integer prev = ROAD_COUNT.get(level);
-        if (prev != null && prev == size && ROAD_INDEX.containsKey(level)) return;
-        Set<Long> set = new HashSet<>();
-        if (list != null) {
-            for (Records.RoadData rd : list) {
+    // 补录触及玩家所在区域的分片中尚未索引的道路；整体替换或归档切换后重建
+    private static void sync(LevelIndex index, RoadShardStorage storage, long regionKey) {
+        if (index.storage != storage || index.generation != storage.generation()) {
+            index.columns.clear();
+            index.indexedCount.clear();
+            index.storage = storage;
+            index.generation = storage.generation();
+        }
+        for (RoadShardStorage.Shard shard : storage.shardsTouching(regionKey)) {
+            int done = index.indexedCount.getOrDefault(shard, 0);
+            int size = shard.size();
+            for (int i = done; i < size; i++) {
+                Records.RoadData rd = shard.get(i);
                 if (rd == null || rd.roadSegmentList() == null) continue;
                 for (Records.RoadSegmentPlacement seg : rd.roadSegmentList()) {
-                    if (seg == null || seg.positions() == null) continue;
-                    for (BlockPos p : seg.positions()) {
-                        set.add(hashXZ(p.getX(), p.getZ()));
-                    }
+                    if (seg == null) continue;
+                    seg.forEachPosition((x, y, z) -> index.columns.add(hashXZ(x, z)));
                 }
             }
+            if (size != done) index.indexedCount.put(shard, size);
         }
-        ROAD_INDEX.put(level, set);
-        ROAD_COUNT.put(level, size);
     }
 
     private static void award(ServerPlayer sp, ResourceLocation id, String criterion) {
@@ -26,15 +26,9 @@ public final class MapDataCollector {
         List<Records.StructureConnection> conns = (connections != null) ? new ArrayList<>(connections) : new ArrayList<>();
         List<Records.StructureInfo> infos = (loc != null) ? new ArrayList<>(loc.structureInfos()) : new ArrayList<>();
         List<List<BlockPos>> roads = new ArrayList<>();
-        List<Records.RoadData> roadDataList = provider.getRoadDataList(level);
-        if (roadDataList != null) {
-            for (Records.RoadData rd : roadDataList) {
-                List<Records.RoadSegmentPlacement> segs = rd.roadSegmentList();
-                if (segs == null || segs.isEmpty()) continue;
-                ArrayList<BlockPos> poly = new ArrayList<>(segs.size());
-                for (Records.RoadSegmentPlacement sp : segs) poly.add(sp.middlePos());
-                if (poly.size() >= 2) roads.add(poly);
-            }
+        // 含已归档区域的道路折线
+        for (List<BlockPos> line : provider.getRoadStorage(level).roadPolylines()) {
+            if (line.size() >= 2) roads.add(new ArrayList<>(line));
         }
 
         if (Level.OVERWORLD.equals(level.dimension())) {
@@ -128,19 +122,13 @@ public final class MapDataCollector {
         }
 
         List<List<BlockPos>> roads = new ArrayList<>();
-        List<Records.RoadData> roadDataList = provider.getRoadDataList(level);
-        if (roadDataList != null) {
-            for (Records.RoadData rd : roadDataList) {
-                List<Records.RoadSegmentPlacement> segs = rd.roadSegmentList();
-                if (segs == null || segs.isEmpty()) continue;
-                ArrayList<BlockPos> poly = new ArrayList<>(segs.size());
-                for (Records.RoadSegmentPlacement sp : segs) {
-                    BlockPos p = sp.middlePos();
-                    int x = p.getX(), z = p.getZ();
-                    if (x >= minBlockX && x <= maxBlockX && z >= minBlockZ && z <= maxBlockZ) poly.add(p);
-                }
-                if (poly.size() >= 2) roads.add(poly);
+        for (List<BlockPos> line : provider.getRoadStorage(level).roadPolylines()) {
+            ArrayList<BlockPos> poly = new ArrayList<>(line.size());
+            for (BlockPos p : line) {
+                int x = p.getX(), z = p.getZ();
+                if (x >= minBlockX && x <= maxBlockX && z >= minBlockZ && z <= maxBlockZ) poly.add(p);
             }
+            if (poly.size() >= 2) roads.add(poly);
         }
 
         return new MapSnapshot(structures, conns, infos, roads);
@@ -311,22 +299,16 @@ public final class MapDataCollector {
         }
 
         List<List<BlockPos>> roads = new ArrayList<>();
-        List<Records.RoadData> roadDataList = provider.getRoadDataList(level);
-        if (roadDataList != null) {
-            for (Records.RoadData rd : roadDataList) {
-                List<Records.RoadSegmentPlacement> segs = rd.roadSegmentList();
-                if (segs == null || segs.isEmpty()) continue;
-                ArrayList<BlockPos> poly = new ArrayList<>(segs.size());
-                for (Records.RoadSegmentPlacement sp : segs) {
-                    BlockPos p = sp.middlePos();
-                    int x = p.getX(), z = p.getZ();
-                    // 道路仅按矩形过滤（任何已生成/规划的道路都属于“已触发范围”）
-                    if (x >= minBlockX && x <= maxBlockX && z >= minBlockZ && z <= maxBlockZ) {
-                        poly.add(p);
-                    }
+        for (List<BlockPos> line : provider.getRoadStorage(level).roadPolylines()) {
+            ArrayList<BlockPos> poly = new ArrayList<>(line.size());
+            for (BlockPos p : line) {
+                int x = p.getX(), z = p.getZ();
+                // 道路仅按矩形过滤（任何已生成/规划的道路都属于“已触发范围”）
+                if (x >= minBlockX && x <= maxBlockX && z >= minBlockZ && z <= maxBlockZ) {
+                    poly.add(p);
                 }
-                if (poly.size() >= 2) roads.add(poly);
             }
+            if (poly.size() >= 2) roads.add(poly);
         }
 
         return new MapSnapshot(structures, conns, infos, roads);
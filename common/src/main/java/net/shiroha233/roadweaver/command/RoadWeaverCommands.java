@@ -0,0 +1,78 @@
+package net.shiroha233.roadweaver.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.shiroha233.roadweaver.config.ConfigService;
+import net.shiroha233.roadweaver.config.ModConfig;
+import net.shiroha233.roadweaver.features.roadlogic.TerrainCache;
+import net.shiroha233.roadweaver.generation.GenerationThrottle;
+import net.shiroha233.roadweaver.generation.RoadGenerationService;
+
+import java.util.Locale;
+
+/**
+ * RoadWeaver 服务器命令（Common），由各平台在命令注册事件中调用 register。
+ */
+public final class RoadWeaverCommands {
+    private RoadWeaverCommands() {}
+
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("roadweaver")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("throttle")
+                        .executes(ctx -> showThrottle(ctx.getSource())))
+                .then(Commands.literal("executor")
+                        .executes(ctx -> showExecutor(ctx.getSource())))
+                .then(Commands.literal("cache")
+                        .executes(ctx -> showCache(ctx.getSource()))));
+    }
+
+    // 显示生成节流器的当前状态
+    private static int showThrottle(CommandSourceStack source) {
+        ModConfig cfg = ConfigService.get();
+        ServerLevel level = source.getLevel();
+        Component mode = Component.translatable(cfg.adaptiveThrottle()
+                ? "command.roadweaver.throttle.adaptive"
+                : "command.roadweaver.throttle.fixed");
+        Component msg = Component.translatable("command.roadweaver.throttle",
+                mode,
+                String.format(Locale.ROOT, "%.1f", GenerationThrottle.lastMspt()),
+                String.format(Locale.ROOT, "%.1f", cfg.targetMspt()),
+                GenerationThrottle.concurrency(),
+                Math.max(1, cfg.maxConcurrentGenerations()),
+                GenerationThrottle.dispatchPerTick(),
+                RoadGenerationService.runningTotal(),
+                RoadGenerationService.queuedCount(level));
+        source.sendSuccess(() -> msg, false);
+        return 1;
+    }
+
+    // 显示当前维度地形采样缓存的占用与命中率
+    private static int showCache(CommandSourceStack source) {
+        TerrainCache cache = TerrainCache.get(source.getLevel());
+        Component msg = Component.translatable("command.roadweaver.cache",
+                cache.tileCount(),
+                String.format(Locale.ROOT, "%.1f", cache.memoryBytes() / (1024.0 * 1024.0)),
+                ConfigService.get().terrainCacheMegabytes(),
+                String.format(Locale.ROOT, "%.1f", cache.hitRate() * 100.0),
+                cache.hits() + cache.misses(),
+                cache.evictions());
+        source.sendSuccess(() -> msg, false);
+        return 1;
+    }
+
+    // 显示生成线程池后端与最近一分钟的吞吐
+    private static int showExecutor(CommandSourceStack source) {
+        ServerLevel level = source.getLevel();
+        Component msg = Component.translatable("command.roadweaver.executor",
+                RoadGenerationService.executorBackend(),
+                RoadGenerationService.roadsPerMinute(),
+                RoadGenerationService.runningCount(level),
+                RoadGenerationService.queuedCount(level));
+        source.sendSuccess(() -> msg, false);
+        return 1;
+    }
+}
@@ -9,6 +9,11 @@ public final class ModConfig {
         DELAUNAY,
         RNG
     }
+    public enum ExecutorMode {
+        FORK_JOIN,
+        FIXED,
+        VIRTUAL
+    }
     private boolean villagePredictionEnabled;
     private int predictRadiusChunks;
     private boolean biomePrefilter;
@@ -28,7 +33,16 @@ public final class ModConfig {
     private int averagingRadius;
     private int generationThreads;
     private int maxConcurrentGenerations;
+    private ExecutorMode executorMode;
+    // 每个维度地形采样缓存的内存上限（MB）
+    private int terrainCacheMegabytes;
     private int aStarStep;
+    // 按服务器 MSPT 自适应调整并发与每 tick 派发数
+    private boolean adaptiveThrottle;
+    private double targetMspt;
+    // 空闲时在出生点与玩家周围预先规划并生成道路
+    private boolean speculativePlanning;
+    private int speculativeRingTiles;
 
     private int roadWidth;         
     private int lampInterval;      
@@ -54,6 +68,9 @@ public final class ModConfig {
     private List<String> forbiddenBiomeSelectors;
     private int forbiddenBiomeBufferBlocks;
     private double forbiddenBiomeProximityPenalty;
+    private boolean enableOptimizedPathfinding;
+    // 单条道路一轮寻路允许的计算时间（秒）
+    private int pathfindingTimeoutSeconds;
     private boolean acceptPartialPaths;
     private double partialProgressThreshold;
     private boolean debugVerboseLogs;
@@ -79,6 +96,8 @@ public final class ModConfig {
         this.dynamicPlanRadiusChunks = 256;
         this.dynamicPlanStrideChunks = Math.max(8, Math.min(64, this.dynamicPlanRadiusChunks / 2));
         this.planningAlgorithm = PlanningAlgorithm.RNG;
+        this.executorMode = ExecutorMode.FORK_JOIN;
+        this.terrainCacheMegabytes = 64;
 
         // 道路生成默认参数
         this.allowArtificial = true;
@@ -88,6 +107,10 @@ public final class ModConfig {
         this.generationThreads = Math.max(2, Math.min(3, Runtime.getRuntime().availableProcessors()));
         this.maxConcurrentGenerations = Math.max(1, Math.min(3, this.generationThreads));
         this.aStarStep = 16;
+        this.adaptiveThrottle = true;
+        this.targetMspt = 40.0;
+        this.speculativePlanning = true;
+        this.speculativeRingTiles = 2;
 
         // 新增默认值
         this.roadWidth = 3;    
@@ -119,6 +142,8 @@ public final class ModConfig {
         this.forbiddenBiomeBufferBlocks = 8;
         this.forbiddenBiomeProximityPenalty = 160.0;
         
+        this.enableOptimizedPathfinding = true;
+        this.pathfindingTimeoutSeconds = 30;
         this.acceptPartialPaths = true;
         this.partialProgressThreshold = 0.8;
         
@@ -189,6 +214,9 @@ public final class ModConfig {
         if (dynamicPlanStrideChunks > dynamicPlanRadiusChunks) dynamicPlanStrideChunks = dynamicPlanRadiusChunks;
         if (dynamicPlanStrideChunks > 256) dynamicPlanStrideChunks = 256;
         if (planningAlgorithm == null) planningAlgorithm = PlanningAlgorithm.RNG;
+        if (executorMode == null) executorMode = ExecutorMode.FORK_JOIN;
+        if (terrainCacheMegabytes < 8) terrainCacheMegabytes = 8;
+        if (terrainCacheMegabytes > 1024) terrainCacheMegabytes = 1024;
 
         // 道路生成安全边界
         if (averagingRadius < 0) averagingRadius = 0;
@@ -199,6 +227,11 @@ public final class ModConfig {
         if (maxConcurrentGenerations > maxCap) maxConcurrentGenerations = maxCap;
         if (aStarStep < 4) aStarStep = 16;            // 合理下限
         if (aStarStep > 128) aStarStep = 128;         // 合理上限
+        if (targetMspt <= 0.0) targetMspt = 40.0;
+        if (targetMspt < 10.0) targetMspt = 10.0;
+        if (targetMspt > 200.0) targetMspt = 200.0;
+        if (speculativeRingTiles < 1) speculativeRingTiles = 2;
+        if (speculativeRingTiles > 8) speculativeRingTiles = 8;
 
         // 新增字段校验
         if (roadWidth < 0) roadWidth = 0;            // 0=自动
@@ -233,6 +266,8 @@ public final class ModConfig {
         if (forbiddenBiomeProximityPenalty < 0.0) forbiddenBiomeProximityPenalty = 0.0;
         if (forbiddenBiomeProximityPenalty > 1000.0) forbiddenBiomeProximityPenalty = 1000.0;
         
+        if (pathfindingTimeoutSeconds < 1) pathfindingTimeoutSeconds = 30;
+        if (pathfindingTimeoutSeconds > 600) pathfindingTimeoutSeconds = 600;
         if (partialProgressThreshold < 0.0) partialProgressThreshold = 0.0;
         if (partialProgressThreshold > 1.0) partialProgressThreshold = 1.0;
         
@@ -276,10 +311,31 @@ public final class ModConfig {
     public int maxConcurrentGenerations() { return maxConcurrentGenerations; }
     public void setMaxConcurrentGenerations(int v) { this.maxConcurrentGenerations = v; }
 
+    // 生成线程池类型：工作窃取 ForkJoinPool、固定线程池或虚拟线程（运行时不支持时回退到 ForkJoinPool）
+    public ExecutorMode executorMode() { return executorMode; }
+    public void setExecutorMode(ExecutorMode v) { this.executorMode = v; }
+
+    public int terrainCacheMegabytes() { return terrainCacheMegabytes; }
+    public void setTerrainCacheMegabytes(int v) { this.terrainCacheMegabytes = v; }
+
     // A* 采样步长
     public int aStarStep() { return aStarStep; }
     public void setAStarStep(int v) { this.aStarStep = v; }
 
+    // 自适应节流开关与目标 MSPT
+    public boolean adaptiveThrottle() { return adaptiveThrottle; }
+    public void setAdaptiveThrottle(boolean v) { this.adaptiveThrottle = v; }
+
+    public double targetMspt() { return targetMspt; }
+    public void setTargetMspt(double v) { this.targetMspt = v; }
+
+    // 空闲预规划开关与向外扩展的环数（以规划 tile 计）
+    public boolean speculativePlanning() { return speculativePlanning; }
+    public void setSpeculativePlanning(boolean v) { this.speculativePlanning = v; }
+
+    public int speculativeRingTiles() { return speculativeRingTiles; }
+    public void setSpeculativeRingTiles(int v) { this.speculativeRingTiles = v; }
+
     // 道路宽度（0=自动）
     public int roadWidth() { return roadWidth; }
     public void setRoadWidth(int v) { this.roadWidth = v; }
@@ -357,6 +413,13 @@ public final class ModConfig {
     public double forbiddenBiomeProximityPenalty() { return forbiddenBiomeProximityPenalty; }
     public void setForbiddenBiomeProximityPenalty(double v) { this.forbiddenBiomeProximityPenalty = v; }
 
+    // 使用可分段推进的优化 A*；关闭时回退到 BasicAStarPathfinder
+    public boolean enableOptimizedPathfinding() { return enableOptimizedPathfinding; }
+    public void setEnableOptimizedPathfinding(boolean v) { this.enableOptimizedPathfinding = v; }
+
+    public int pathfindingTimeoutSeconds() { return pathfindingTimeoutSeconds; }
+    public void setPathfindingTimeoutSeconds(int v) { this.pathfindingTimeoutSeconds = v; }
+
     public boolean acceptPartialPaths() { return acceptPartialPaths; }
     public void setAcceptPartialPaths(boolean v) { this.acceptPartialPaths = v; }
 
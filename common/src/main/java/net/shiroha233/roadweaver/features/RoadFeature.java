@@ -8,7 +8,6 @@ import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.WorldGenLevel;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.level.levelgen.Heightmap;
 import net.minecraft.world.level.levelgen.feature.Feature;
 import net.minecraft.world.level.levelgen.feature.FeaturePlaceContext;
 import net.shiroha233.roadweaver.config.ConfigService;
@@ -16,8 +15,11 @@ import net.shiroha233.roadweaver.config.ModConfig;
 import net.shiroha233.roadweaver.features.config.RoadFeatureConfig;
 import net.shiroha233.roadweaver.features.decoration.Decoration;
 import net.shiroha233.roadweaver.features.decoration.system.RoadDecorationSystem;
+import net.shiroha233.roadweaver.features.placement.RoadChunkIndex;
+import net.shiroha233.roadweaver.features.placement.RoadPlacementPlan;
+import net.shiroha233.roadweaver.features.placement.SlidingHeightWindow;
+import net.shiroha233.roadweaver.features.roadlogic.RoadPathCalculator;
 import net.shiroha233.roadweaver.helpers.Records;
-import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 
 import java.util.*;
 
@@ -32,63 +34,108 @@ public class RoadFeature extends Feature<RoadFeatureConfig> {
         Level lvl = world.getLevel();
         if (!(lvl instanceof ServerLevel server)) return false;
 
-        List<Records.RoadData> roadDataList = WorldDataProvider.getInstance().getRoadDataList(server);
-        if (roadDataList == null || roadDataList.isEmpty()) return false;
-
         ChunkPos currentChunk = new ChunkPos(ctx.origin());
+        // 只处理穿过当前区块的道路段，而不是遍历全部道路
+        List<RoadChunkIndex.Span> spans = RoadChunkIndex.spansAt(server, currentChunk);
+        // 已归档区域的道路直接使用归档中的放置计划
+        List<RoadPlacementPlan.Piece> archived = RoadChunkIndex.archivedPlans(server, currentChunk);
+        if (spans.isEmpty() && archived.isEmpty()) return false;
+
         Set<BlockPos> processedMiddle = new HashSet<>();
         RandomSource random = ctx.random();
         ModConfig cfg = ConfigService.get();
         int averagingRadius = Math.max(0, cfg.averagingRadius());
 
         Set<Decoration> decorations = new HashSet<>();
-        for (Records.RoadData data : roadDataList) {
+        Map<Records.RoadData, List<BlockPos>> middlesByRoad = new IdentityHashMap<>();
+        SlidingHeightWindow window = new SlidingHeightWindow(averagingRadius);
+        for (RoadChunkIndex.Span span : spans) {
+            if (span.plan() != null) {
+                applyPlan(world, span.plan(), processedMiddle, decorations, random, cfg);
+                continue;
+            }
+            Records.RoadData data = span.road();
             int roadType = data.roadType();
             int roadWidth = Math.max(1, data.width());
             List<BlockState> materials = data.materials();
             List<Records.RoadSegmentPlacement> segments = data.roadSegmentList();
             if (segments == null || segments.size() < 5) continue;
 
-            List<BlockPos> middlePositions = segments.stream().map(Records.RoadSegmentPlacement::middlePos).toList();
-            int segmentIndex = 0;
-            for (int i = 2; i < segments.size() - 2; i++) {
+            List<BlockPos> middlePositions = middlesByRoad.computeIfAbsent(data,
+                    d -> segments.stream().map(Records.RoadSegmentPlacement::middlePos).toList());
+            int from = Math.max(2, span.from());
+            int to = Math.min(segments.size() - 2, span.to());
+            if (from >= to) continue;
+            int lastIndex = middlePositions.size() - 1;
+            window.reset(Math.max(0, from - averagingRadius));
+            for (int i = from; i < to; i++) {
+                // 推进窗口到 [i - r, i + r]：每个中心点只采样一次
+                int hi = Math.min(lastIndex, i + averagingRadius);
+                while (window.endIndex() <= hi) {
+                    BlockPos sample = middlePositions.get(window.endIndex());
+                    // 与预计算计划使用同一高度来源，两条路径得到相同的道路高度
+                    window.push(RoadPathCalculator.heightSampler(sample.getX(), sample.getZ(), server));
+                }
+                int lo = Math.max(0, i - averagingRadius);
+                while (window.firstIndex() < lo) window.pop();
+
                 BlockPos middle = middlePositions.get(i);
                 if (!processedMiddle.add(middle)) continue;
-                segmentIndex++;
+                // 段序号按道路自身顺序计算，与其它道路无关
+                int segmentIndex = i - 1;
                 if (segmentIndex < 60 || segmentIndex > segments.size() - 60) continue;
-                ChunkPos middleChunk = new ChunkPos(middle);
-                if (!middleChunk.equals(currentChunk)) continue;
 
                 BlockPos prev = middlePositions.get(i - 2);
                 BlockPos next = middlePositions.get(i + 2);
 
-                List<Integer> heights = new ArrayList<>();
-                for (int j = i - averagingRadius; j <= i + averagingRadius; j++) {
-                    if (j >= 0 && j < middlePositions.size()) {
-                        BlockPos sample = middlePositions.get(j);
-                        int yTop = world.getHeight(Heightmap.Types.WORLD_SURFACE_WG, sample.getX(), sample.getZ());
-                        heights.add(yTop);
-                    }
-                }
-                int averageY = heights.isEmpty() ? middle.getY() : (int) Math.round(heights.stream().mapToInt(Integer::intValue).average().orElse(middle.getY()));
-                int topYCenter = world.getHeight(Heightmap.Types.WORLD_SURFACE_WG, middle.getX(), middle.getZ());
+                int averageY = window.isEmpty() ? middle.getY() : window.average();
+                int topYCenter = window.get(i);
                 BlockPos averaged = new BlockPos(middle.getX(), topYCenter, middle.getZ());
 
                 Records.RoadSegmentPlacement seg = segments.get(i);
-                for (BlockPos widthBlock : seg.positions()) {
-                    BlockPos pos = new BlockPos(widthBlock.getX(), averageY, widthBlock.getZ());
-                    placeOnSurface(world, pos, materials, roadType, random, cfg);
-                }
+                seg.forEachPosition((x, y, z) ->
+                        RoadDecorationSystem.placeOnSurface(world, x, averageY, z, materials, roadType, random, cfg));
 
                 addDecoration(world, decorations, averaged, segmentIndex, next, prev, middlePositions, roadType, roadWidth, random, cfg);
             }
         }
+        for (RoadPlacementPlan.Piece plan : archived) {
+            applyPlan(world, plan, processedMiddle, decorations, random, cfg);
+        }
         RoadDecorationSystem.finalizeDecorations(decorations);
+        RoadChunkIndex.releasePlans(server, currentChunk);
         return true;
     }
 
-    private static void placeOnSurface(WorldGenLevel world, BlockPos placePos, List<BlockState> material, int roadType, RandomSource random, ModConfig cfg) {
-        RoadDecorationSystem.placeOnSurface(world, placePos, material, roadType, random, cfg);
+    // 按生成时预计算的计划写入：目标高度、方块列与装饰位均已确定
+    private static void applyPlan(WorldGenLevel world,
+                                  RoadPlacementPlan.Piece plan,
+                                  Set<BlockPos> processedMiddle,
+                                  Set<Decoration> decorations,
+                                  RandomSource random,
+                                  ModConfig cfg) {
+        int[] middles = plan.middles();
+        int[] columns = plan.columns();
+        int[] columnStart = plan.columnStart();
+        List<RoadPlacementPlan.DecorationSlot> slots = plan.slots();
+        int slot = 0;
+        for (int s = 0; s < plan.segmentCount(); s++) {
+            while (slot < slots.size() && slots.get(slot).segment() < s) slot++;
+            BlockPos middle = new BlockPos(middles[s * 3], middles[s * 3 + 1], middles[s * 3 + 2]);
+            if (!processedMiddle.add(middle)) continue;
+
+            int y = plan.targetY()[s];
+            for (int c = columnStart[s]; c < columnStart[s + 1]; c++) {
+                RoadDecorationSystem.placeOnSurface(world, columns[c * 2], y, columns[c * 2 + 1], plan.materials(), plan.roadType(), random, cfg);
+            }
+
+            if (slot < slots.size() && slots.get(slot).segment() == s) {
+                RoadPlacementPlan.DecorationSlot d = slots.get(slot);
+                BlockPos averaged = new BlockPos(middle.getX(), plan.centerY()[s], middle.getZ());
+                addDecoration(world, decorations, averaged, plan.segmentIndex()[s], d.next(), d.prev(),
+                        plan.middlePositions(), plan.roadType(), plan.roadWidth(), random, cfg);
+            }
+        }
     }
 
     private static void addDecoration(WorldGenLevel world,
@@ -29,6 +29,8 @@ public final class RoadDecorationSystem {
     private RoadDecorationSystem() {}
     private static final int SIGN_INDEX_OFFSET = 65;
     private static final int SIDE_OFFSET = 2;
+    // 世界生成线程各自复用的坐标游标，避免路面写入热循环中的临时 BlockPos
+    private static final ThreadLocal<BlockPos.MutableBlockPos> CURSOR = ThreadLocal.withInitial(BlockPos.MutableBlockPos::new);
 
     public static List<BlockState> selectMaterials(RandomSource rnd, RoadFeatureConfig cfg) {
         return selectMaterialsFromPresets(rnd);
@@ -61,78 +63,86 @@ public final class RoadDecorationSystem {
     }
 
     public static void placeOnSurface(WorldGenLevel world, BlockPos placePos, List<BlockState> material, int roadType, RandomSource random, ModConfig cfg) {
+        placeOnSurface(world, placePos.getX(), placePos.getY(), placePos.getZ(), material, roadType, random, cfg);
+    }
+
+    /**
+     * 与 {@link #placeOnSurface(WorldGenLevel, BlockPos, List, int, RandomSource, ModConfig)} 相同，
+     * 直接接收坐标，整个路面/堤道/净空流程复用线程内游标，不创建临时 BlockPos。
+     */
+    public static void placeOnSurface(WorldGenLevel world, int x, int y, int z, List<BlockState> material, int roadType, RandomSource random, ModConfig cfg) {
         double naturalBlockChance = 0.5;
-        BlockPos surfacePos = placePos;
-        if (roadType == 1 || Math.max(0, cfg.averagingRadius()) == 0) {
-            int topY = world.getHeight(Heightmap.Types.WORLD_SURFACE_WG, placePos.getX(), placePos.getZ());
-            surfacePos = new BlockPos(placePos.getX(), topY, placePos.getZ());
-        }
-        int topYForBelow = world.getHeight(Heightmap.Types.WORLD_SURFACE_WG, surfacePos.getX(), surfacePos.getZ());
-        BlockPos belowTop = new BlockPos(surfacePos.getX(), topYForBelow - 1, surfacePos.getZ());
-        BlockState blockStateAtPos = world.getBlockState(belowTop);
+        int topY = world.getHeight(Heightmap.Types.WORLD_SURFACE_WG, x, z);
+        int surfaceY = (roadType == 1 || Math.max(0, cfg.averagingRadius()) == 0) ? topY : y;
+        BlockState blockStateAtPos = world.getBlockState(CURSOR.get().set(x, topY - 1, z));
         if (roadType == 0 || random.nextDouble() < naturalBlockChance) {
-            placeRoadBlock(world, blockStateAtPos, surfacePos, material, random, cfg);
+            placeRoadBlock(world, blockStateAtPos, x, surfaceY, z, material, random);
         }
     }
 
     public static void placeRoadBlock(WorldGenLevel world, BlockState blockBelow, BlockPos surfacePos, List<BlockState> materials, RandomSource random, ModConfig cfg) {
+        placeRoadBlock(world, blockBelow, surfacePos.getX(), surfacePos.getY(), surfacePos.getZ(), materials, random);
+    }
+
+    private static void placeRoadBlock(WorldGenLevel world, BlockState blockBelow, int x, int surfaceY, int z, List<BlockState> materials, RandomSource random) {
         if (!placeAllowedCheck(blockBelow.getBlock())) return;
         BlockState chosen = materials.get(random.nextInt(materials.size()));
 
         final int MAX_CAUSEWAY_DEPTH = 12;
-        BlockPos below1 = surfacePos.below();
-        BlockPos below2 = surfacePos.below(2);
-        boolean sturdy1 = world.getBlockState(below1).isFaceSturdy(world, below1, Direction.UP);
-        boolean sturdy2 = world.getBlockState(below2).isFaceSturdy(world, below2, Direction.UP);
+        final int minY = world.getMinBuildHeight();
+        final int below1Y = surfaceY - 1;
+        final int below2Y = surfaceY - 2;
+        BlockPos.MutableBlockPos cursor = CURSOR.get();
+        boolean sturdy1 = isSturdy(world, cursor.set(x, below1Y, z));
+        boolean sturdy2 = isSturdy(world, cursor.set(x, below2Y, z));
 
         if (!sturdy1 && !sturdy2) {
             // Scan downward to find a sturdy base within max depth; if found, fill up to below1. Otherwise, fill a limited pillar.
-            BlockPos cursor = below2;
+            int cy = below2Y;
             int depth = 0;
-            BlockPos base = null;
-            while (cursor.getY() > world.getMinBuildHeight() && depth < MAX_CAUSEWAY_DEPTH) {
-                if (world.getBlockState(cursor).isFaceSturdy(world, cursor, Direction.UP)) {
-                    base = cursor;
+            int baseY = Integer.MIN_VALUE;
+            while (cy > minY && depth < MAX_CAUSEWAY_DEPTH) {
+                if (isSturdy(world, cursor.set(x, cy, z))) {
+                    baseY = cy;
                     break;
                 }
-                cursor = cursor.below();
+                cy--;
                 depth++;
             }
 
-            BlockPos fillStart = (base != null) ? base.above() : below1.below(Math.min(MAX_CAUSEWAY_DEPTH - 1, Math.max(0, below1.getY() - world.getMinBuildHeight())));
+            int fillStartY = (baseY != Integer.MIN_VALUE) ? baseY + 1 : below1Y - Math.min(MAX_CAUSEWAY_DEPTH - 1, Math.max(0, below1Y - minY));
             // Clamp start to world min height
-            if (fillStart.getY() < world.getMinBuildHeight()) {
-                fillStart = new BlockPos(fillStart.getX(), world.getMinBuildHeight(), fillStart.getZ());
-            }
-            BlockPos pos = fillStart;
-            while (pos.getY() <= below1.getY()) {
-                world.setBlock(pos, chosen, 3);
-                pos = pos.above();
+            if (fillStartY < minY) fillStartY = minY;
+            for (int fy = fillStartY; fy <= below1Y; fy++) {
+                world.setBlock(cursor.set(x, fy, z), chosen, 3);
             }
         } else {
             // Has immediate or near support; place the road block
-            world.setBlock(below1, chosen, 3);
+            world.setBlock(cursor.set(x, below1Y, z), chosen, 3);
         }
 
         // Clear up to 3 blocks above for headroom (skip logs/fences)
         for (int i = 0; i < 3; i++) {
-            BlockPos up = surfacePos.above(i);
-            BlockState blockStateUp = world.getBlockState(up);
+            cursor.set(x, surfaceY + i, z);
+            BlockState blockStateUp = world.getBlockState(cursor);
             if (!blockStateUp.isAir() && !blockStateUp.is(BlockTags.LOGS) && !blockStateUp.is(BlockTags.FENCES)) {
-                world.setBlock(up, Blocks.AIR.defaultBlockState(), 3);
+                world.setBlock(cursor, Blocks.AIR.defaultBlockState(), 3);
             } else {
                 break;
             }
         }
 
         // Beautify: convert grass two blocks below into dirt to reduce side exposure
-        BlockPos belowPos1 = surfacePos.below(2);
-        BlockState belowState1 = world.getBlockState(belowPos1);
-        if (belowState1.is(Blocks.GRASS_BLOCK)) {
-            world.setBlock(belowPos1, Blocks.DIRT.defaultBlockState(), 3);
+        cursor.set(x, below2Y, z);
+        if (world.getBlockState(cursor).is(Blocks.GRASS_BLOCK)) {
+            world.setBlock(cursor, Blocks.DIRT.defaultBlockState(), 3);
         }
     }
 
+    private static boolean isSturdy(WorldGenLevel world, BlockPos pos) {
+        return world.getBlockState(pos).isFaceSturdy(world, pos, Direction.UP);
+    }
+
     public static void addDecoration(WorldGenLevel world,
                                      Set<Decoration> out,
                                      BlockPos placePos,
@@ -177,6 +187,15 @@ public final class RoadDecorationSystem {
         }
     }
 
+    /**
+     * 判断该段序号是否可能产生装饰（距离牌或路灯/路标），供预计算放置计划筛选装饰位。
+     */
+    public static boolean hasDecorationSlot(int segmentIndex, int middleCount, ModConfig cfg) {
+        if (segmentIndex == SIGN_INDEX_OFFSET || segmentIndex == middleCount - SIGN_INDEX_OFFSET) return true;
+        int interval = Math.max(1, cfg.lampInterval());
+        return segmentIndex % interval == 0;
+    }
+
     public static void finalizeDecorations(Set<Decoration> decorations) {
         RoadStructures.tryPlaceDecorations(decorations);
     }
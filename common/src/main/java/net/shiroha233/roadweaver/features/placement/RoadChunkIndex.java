@@ -0,0 +1,201 @@
+package net.shiroha233.roadweaver.features.placement;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.RoadArchive;
+import net.shiroha233.roadweaver.persistence.RoadShardStorage;
+import net.shiroha233.roadweaver.persistence.WorldDataProvider;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 道路区块空间索引：区块键 -> 穿过该区块的道路段区间。
+ * 每个维度一份，按区域分片增量补录：只加载并索引触及所查询区块所在区域的分片。
+ */
+public final class RoadChunkIndex {
+    private RoadChunkIndex() {}
+
+    private static final Map<ServerLevel, LevelIndex> INDEXES = new ConcurrentHashMap<>();
+    // 每个维度保留放置计划的区块数上限，超出时淘汰最久未写入的区块（其道路退回滑动窗口逐段计算）。
+    // 单条道路在一个区块内的计划约 2–3 KB，单道路区块约 8–12 MB / 维度
+    private static final int MAX_PLANNED_CHUNKS = 4096;
+
+    /**
+     * 某条道路在单个区块内的连续段区间 [from, to)。
+     * plan 为生成时预计算的放置计划，历史数据或计划已被消费时为 null。
+     */
+    public record Span(Records.RoadData road, int from, int to, RoadPlacementPlan.Piece plan) {}
+
+    /**
+     * 返回穿过指定区块的所有道路段区间；无道路时返回空列表。
+     */
+    public static List<Span> spansAt(ServerLevel level, ChunkPos chunk) {
+        LevelIndex index = sync(level, RoadShardStorage.regionKeyOfChunk(chunk.x, chunk.z));
+        return index.get(chunk.toLong());
+    }
+
+    /**
+     * 已归档道路在指定区块的放置计划，每次调用从归档临时解码，不进入索引。
+     */
+    public static List<RoadPlacementPlan.Piece> archivedPlans(ServerLevel level, ChunkPos chunk) {
+        RoadShardStorage storage = WorldDataProvider.getInstance().getRoadStorage(level);
+        List<RoadArchive> archives = storage.archivesTouching(RoadShardStorage.regionKeyOfChunk(chunk.x, chunk.z));
+        if (archives.isEmpty()) return Collections.emptyList();
+        List<RoadPlacementPlan.Piece> out = new ArrayList<>();
+        for (RoadArchive archive : archives) out.addAll(archive.pieces(chunk.toLong()));
+        return out;
+    }
+
+    /**
+     * 区块放置完成后释放其计划，只保留段区间。
+     */
+    public static void releasePlans(ServerLevel level, ChunkPos chunk) {
+        LevelIndex index = INDEXES.get(level);
+        if (index != null) index.releasePlans(chunk.toLong());
+    }
+
+    /**
+     * 新道路写入世界数据后在服务器线程上调用，只补录该道路所在分片尾部新增的道路。
+     * plans 为生成时预计算的放置计划：已加载的完整区块直接丢弃，其余区块的计划
+     * 在放置后释放，或在超过 MAX_PLANNED_CHUNKS 时按最久未写入淘汰。
+     */
+    public static void onRoadAdded(ServerLevel level, Records.RoadData data, Long2ObjectOpenHashMap<RoadPlacementPlan.Piece> plans) {
+        if (level == null || data == null || data.roadSegmentList() == null || data.roadSegmentList().isEmpty()) return;
+        LevelIndex index = INDEXES.computeIfAbsent(level, l -> new LevelIndex());
+        if (plans != null && !plans.isEmpty()) {
+            LongIterator it = plans.keySet().iterator();
+            while (it.hasNext()) {
+                long key = it.nextLong();
+                if (level.getChunkSource().getChunkNow(ChunkPos.getX(key), ChunkPos.getZ(key)) != null) it.remove();
+            }
+            synchronized (index) {
+                index.pendingPlans.put(data, plans);
+            }
+        }
+        BlockPos first = data.roadSegmentList().get(0).middlePos();
+        try {
+            sync(level, RoadShardStorage.regionKey(first.getX(), first.getZ()));
+        } finally {
+            // 道路未进入索引（例如被存储拒绝）时计划也不保留
+            synchronized (index) {
+                index.pendingPlans.remove(data);
+            }
+        }
+    }
+
+    public static void clear(ServerLevel level) {
+        INDEXES.remove(level);
+    }
+
+    public static void clearAll() {
+        INDEXES.clear();
+    }
+
+    // 补录触及该区域的分片中尚未进入索引的道路，每个分片只处理尾部新增部分
+    private static LevelIndex sync(ServerLevel level, long regionKey) {
+        LevelIndex index = INDEXES.computeIfAbsent(level, l -> new LevelIndex());
+        RoadShardStorage storage = WorldDataProvider.getInstance().getRoadStorage(level);
+        List<RoadShardStorage.Shard> shards = storage.shardsTouching(regionKey);
+        synchronized (index) {
+            if (index.storage != storage || index.generation != storage.generation()) {
+                // 数据被整体替换（例如切换存档），丢弃旧索引
+                index.reset();
+                index.storage = storage;
+                index.generation = storage.generation();
+            }
+            for (RoadShardStorage.Shard shard : shards) {
+                int done = index.indexedCount.getOrDefault(shard, 0);
+                int size = shard.size();
+                for (int i = done; i < size; i++) {
+                    index.add(shard.get(i));
+                }
+                if (size != done) index.indexedCount.put(shard, size);
+            }
+        }
+        return index;
+    }
+
+    private static final class LevelIndex {
+        private final Long2ObjectOpenHashMap<List<Span>> byChunk = new Long2ObjectOpenHashMap<>();
+        // 只在 onRoadAdded 补录期间持有，补录结束即移除
+        private final Map<Records.RoadData, Long2ObjectOpenHashMap<RoadPlacementPlan.Piece>> pendingPlans = new IdentityHashMap<>();
+        private final Map<RoadShardStorage.Shard, Integer> indexedCount = new IdentityHashMap<>();
+        // 仍持有计划的区块，按最近写入排序（队首最久）
+        private final LongLinkedOpenHashSet planned = new LongLinkedOpenHashSet();
+        private RoadShardStorage storage;
+        private int generation;
+
+        synchronized List<Span> get(long chunkKey) {
+            List<Span> spans = byChunk.get(chunkKey);
+            return spans != null ? spans : Collections.emptyList();
+        }
+
+        synchronized void reset() {
+            byChunk.clear();
+            indexedCount.clear();
+            planned.clear();
+        }
+
+        synchronized void releasePlans(long chunkKey) {
+            if (planned.remove(chunkKey)) dropPlans(chunkKey);
+        }
+
+        private void dropPlans(long chunkKey) {
+            List<Span> spans = byChunk.get(chunkKey);
+            if (spans == null || spans.stream().allMatch(s -> s.plan() == null)) return;
+            List<Span> next = new ArrayList<>(spans.size());
+            for (Span s : spans) {
+                next.add(s.plan() == null ? s : new Span(s.road(), s.from(), s.to(), null));
+            }
+            byChunk.put(chunkKey, Collections.unmodifiableList(next));
+        }
+
+        synchronized void add(Records.RoadData data) {
+            if (data == null) return;
+            List<Records.RoadSegmentPlacement> segments = data.roadSegmentList();
+            if (segments == null || segments.isEmpty()) return;
+            Long2ObjectOpenHashMap<RoadPlacementPlan.Piece> plans = pendingPlans.remove(data);
+            int runStart = 0;
+            long runKey = chunkKey(segments.get(0).middlePos());
+            for (int i = 1; i < segments.size(); i++) {
+                long key = chunkKey(segments.get(i).middlePos());
+                if (key != runKey) {
+                    append(runKey, new Span(data, runStart, i, plans != null ? plans.remove(runKey) : null));
+                    runStart = i;
+                    runKey = key;
+                }
+            }
+            append(runKey, new Span(data, runStart, segments.size(), plans != null ? plans.remove(runKey) : null));
+        }
+
+        // 区块获得新计划：移到队尾，超出上限时淘汰队首区块的计划
+        private void retain(long key) {
+            planned.addAndMoveToLast(key);
+            while (planned.size() > MAX_PLANNED_CHUNKS) dropPlans(planned.removeFirstLong());
+        }
+
+        // 写时复制，读取方拿到的列表不会再被修改
+        private void append(long key, Span span) {
+            List<Span> old = byChunk.get(key);
+            List<Span> next = new ArrayList<>(old == null ? 1 : old.size() + 1);
+            if (old != null) next.addAll(old);
+            next.add(span);
+            byChunk.put(key, Collections.unmodifiableList(next));
+            if (span.plan() != null) retain(key);
+        }
+
+        private static long chunkKey(BlockPos p) {
+            return ChunkPos.asLong(p.getX() >> 4, p.getZ() >> 4);
+        }
+    }
+}
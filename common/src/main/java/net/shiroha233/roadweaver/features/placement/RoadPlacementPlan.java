@@ -0,0 +1,136 @@
+package net.shiroha233.roadweaver.features.placement;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.shiroha233.roadweaver.config.ModConfig;
+import net.shiroha233.roadweaver.features.decoration.system.RoadDecorationSystem;
+import net.shiroha233.roadweaver.helpers.Records;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * 道路按区块预计算的放置计划。
+ * 寻路完成后在生成线程上一次性算出每个区块要写的方块列、目标高度与装饰位，
+ * RoadFeature 在区块装饰阶段只需按计划写入。
+ */
+public final class RoadPlacementPlan {
+    private RoadPlacementPlan() {}
+
+    /**
+     * 单条道路在单个区块内的放置计划。
+     * middles 为 x,y,z 三元组（用于跨道路去重），columns 为 x,z 二元组，
+     * 第 s 段的列位于 columns[columnStart[s]*2 .. columnStart[s+1]*2)。
+     */
+    public record Piece(int roadType,
+                        int roadWidth,
+                        List<BlockState> materials,
+                        List<BlockPos> middlePositions,
+                        int[] segmentIndex,
+                        int[] middles,
+                        int[] targetY,
+                        int[] centerY,
+                        int[] columnStart,
+                        int[] columns,
+                        List<DecorationSlot> slots) {
+        public int segmentCount() {
+            return segmentIndex.length;
+        }
+    }
+
+    /**
+     * 装饰位：segment 为 Piece 内的段下标。
+     */
+    public record DecorationSlot(int segment, BlockPos prev, BlockPos next) {}
+
+    /**
+     * 为一条道路构建按区块划分的放置计划。
+     * heightAt 按 (x, z) 返回生成器的 WORLD_SURFACE_WG 基础高度（RoadPathCalculator.heightSampler，
+     * 与 RoadFeature 无计划时的回退路径相同），每个中心点只采样一次。
+     */
+    public static Long2ObjectOpenHashMap<Piece> build(Records.RoadData data, ModConfig cfg, IntBinaryOperator heightAt) {
+        Long2ObjectOpenHashMap<Piece> out = new Long2ObjectOpenHashMap<>();
+        List<Records.RoadSegmentPlacement> segments = data.roadSegmentList();
+        if (segments == null || segments.size() < 5) return out;
+
+        int n = segments.size();
+        List<BlockPos> middlePositions = new ArrayList<>(n);
+        for (Records.RoadSegmentPlacement seg : segments) middlePositions.add(seg.middlePos());
+
+        // 前缀和求滑动平均，每个中心点只采样一次高度
+        int[] heights = new int[n];
+        long[] prefix = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            BlockPos p = middlePositions.get(i);
+            heights[i] = heightAt.applyAsInt(p.getX(), p.getZ());
+            prefix[i + 1] = prefix[i] + heights[i];
+        }
+        int radius = Math.max(0, cfg.averagingRadius());
+
+        Long2ObjectOpenHashMap<Builder> builders = new Long2ObjectOpenHashMap<>();
+        for (int i = 2; i < n - 2; i++) {
+            int segmentIndex = i - 1;
+            if (segmentIndex < 60 || segmentIndex > n - 60) continue;
+            BlockPos middle = middlePositions.get(i);
+            long chunkKey = ChunkPos.asLong(middle.getX() >> 4, middle.getZ() >> 4);
+            Builder b = builders.computeIfAbsent(chunkKey, k -> new Builder());
+
+            int lo = Math.max(0, i - radius);
+            int hi = Math.min(n - 1, i + radius);
+            int averageY = (int) Math.round((double) (prefix[hi + 1] - prefix[lo]) / (hi - lo + 1));
+
+            int s = b.segmentIndex.size();
+            b.segmentIndex.add(segmentIndex);
+            b.middles.add(middle.getX());
+            b.middles.add(middle.getY());
+            b.middles.add(middle.getZ());
+            b.targetY.add(averageY);
+            b.centerY.add(heights[i]);
+            segments.get(i).forEachPosition((x, y, z) -> {
+                b.columns.add(x);
+                b.columns.add(z);
+            });
+            b.columnStart.add(b.columns.size() / 2);
+            if (RoadDecorationSystem.hasDecorationSlot(segmentIndex, n, cfg)) {
+                b.slots.add(new DecorationSlot(s, middlePositions.get(i - 2), middlePositions.get(i + 2)));
+            }
+        }
+
+        int roadWidth = Math.max(1, data.width());
+        builders.long2ObjectEntrySet().forEach(e -> {
+            Builder b = e.getValue();
+            out.put(e.getLongKey(), new Piece(
+                    data.roadType(),
+                    roadWidth,
+                    data.materials(),
+                    middlePositions,
+                    b.segmentIndex.toIntArray(),
+                    b.middles.toIntArray(),
+                    b.targetY.toIntArray(),
+                    b.centerY.toIntArray(),
+                    b.columnStart.toIntArray(),
+                    b.columns.toIntArray(),
+                    List.copyOf(b.slots)
+            ));
+        });
+        return out;
+    }
+
+    private static final class Builder {
+        final IntArrayList segmentIndex = new IntArrayList();
+        final IntArrayList middles = new IntArrayList();
+        final IntArrayList targetY = new IntArrayList();
+        final IntArrayList centerY = new IntArrayList();
+        final IntArrayList columnStart = new IntArrayList();
+        final IntArrayList columns = new IntArrayList();
+        final List<DecorationSlot> slots = new ArrayList<>();
+
+        Builder() {
+            columnStart.add(0);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package net.shiroha233.roadweaver.features.placement;
+
+/**
+ * 道路高度滑动平均窗口：int 环形缓冲 + 运行和。
+ * 按段顺序推进时每个中心点只采样一次高度，窗口移动不产生任何装箱或分配。
+ */
+public final class SlidingHeightWindow {
+    private final int[] ring;
+    private int head;
+    private int size;
+    private long sum;
+    private int firstIndex;
+
+    public SlidingHeightWindow(int radius) {
+        this.ring = new int[2 * Math.max(0, radius) + 1];
+    }
+
+    /**
+     * 清空窗口，下一次 push 的样本对应段下标 firstIndex。
+     */
+    public void reset(int firstIndex) {
+        this.head = 0;
+        this.size = 0;
+        this.sum = 0L;
+        this.firstIndex = firstIndex;
+    }
+
+    /**
+     * 窗口内最后一个样本之后的段下标，即下一次 push 对应的下标。
+     */
+    public int endIndex() {
+        return firstIndex + size;
+    }
+
+    public int firstIndex() {
+        return firstIndex;
+    }
+
+    public void push(int height) {
+        if (size == ring.length) pop();
+        ring[(head + size) % ring.length] = height;
+        size++;
+        sum += height;
+    }
+
+    public void pop() {
+        if (size == 0) return;
+        sum -= ring[head];
+        head = (head + 1) % ring.length;
+        size--;
+        firstIndex++;
+    }
+
+    /**
+     * 返回段下标 index 处的样本，index 必须位于窗口内。
+     */
+    public int get(int index) {
+        return ring[(head + (index - firstIndex)) % ring.length];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 与原实现一致：对窗口内样本求平均并四舍五入。
+     */
+    public int average() {
+        return (int) Math.round((double) sum / size);
+    }
+}
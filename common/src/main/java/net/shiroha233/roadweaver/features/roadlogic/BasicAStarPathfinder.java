@@ -1,5 +1,8 @@
 package net.shiroha233.roadweaver.features.roadlogic;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.server.level.ServerLevel;
@@ -30,14 +33,16 @@ public final class BasicAStarPathfinder {
                                                                        int width,
                                                                        ServerLevel level,
                                                                        int maxSteps) {
-        PriorityQueue<Node> openSet = new PriorityQueue<>(Comparator.comparingDouble(n -> n.f));
-        Map<BlockPos, Node> allNodes = new HashMap<>();
-        Set<BlockPos> closed = new HashSet<>();
+        // 开放集按列坐标 (x, z) 索引；同一列的高度固定，与按 BlockPos 区分等价
+        LongMinHeap openSet = new LongMinHeap(256);
+        Long2ObjectOpenHashMap<Node> allNodes = new Long2ObjectOpenHashMap<>();
+        LongOpenHashSet closed = new LongOpenHashSet();
         Map<BlockPos, List<BlockPos>> interpolatedSegments = new HashMap<>();
 
         Node startNode = new Node(startGround, null, 0.0, heuristic(startGround, endGround));
-        openSet.add(startNode);
-        allNodes.put(startGround, startNode);
+        long startKey = columnKey(startGround.getX(), startGround.getZ());
+        openSet.offer(startKey, startNode.f);
+        allNodes.put(startKey, startNode);
 
         int d = getNeighborDistance();
         int[][] neighborOffsets = new int[][]{
@@ -47,21 +52,24 @@ public final class BasicAStarPathfinder {
 
         int stepsBudget = Math.max(1, maxSteps);
         while (!openSet.isEmpty() && stepsBudget-- > 0) {
-            Node current = openSet.poll();
+            // 生成任务被取消（服务器停止）时尽快退出
+            if ((stepsBudget & 63) == 0 && Thread.currentThread().isInterrupted()) return null;
+            long currentKey = openSet.poll();
+            Node current = allNodes.remove(currentKey);
             if (current == null) break;
 
             if (manhattan2d(current.pos, endGround) < d * 2) {
                 return reconstructPath(current, width, interpolatedSegments);
             }
 
-            closed.add(current.pos);
-            allNodes.remove(current.pos);
+            closed.add(currentKey);
 
             for (int[] off : neighborOffsets) {
                 BlockPos nxz = current.pos.offset(off[0], 0, off[1]);
+                long nKey = columnKey(nxz.getX(), nxz.getZ());
+                if (closed.contains(nKey)) continue;
                 int y = RoadPathCalculator.heightSampler(nxz.getX(), nxz.getZ(), level);
                 BlockPos np = new BlockPos(nxz.getX(), y, nxz.getZ());
-                if (closed.contains(np)) continue;
 
                 Holder<Biome> biome = level.getBiome(np);
                 int biomeCost = (biome.is(BiomeTags.IS_RIVER) || biome.is(BiomeTags.IS_OCEAN) || biome.is(BiomeTags.IS_DEEP_OCEAN)) ? BIOME_BASE_COST : 0;
@@ -89,13 +97,14 @@ public final class BasicAStarPathfinder {
                         + nearWaterCost
                         + deviationCost;
 
-                Node n = allNodes.get(np);
+                Node n = allNodes.get(nKey);
                 if (n == null || tentativeG < n.g) {
                     double h = heuristic(np, endGround);
                     double fWeighted = tentativeG + (1.0 + HEURISTIC_EPSILON) * h;
                     n = new Node(np, current, tentativeG, fWeighted);
-                    allNodes.put(np, n);
-                    openSet.add(n);
+                    allNodes.put(nKey, n);
+                    // 已在开放集中时原地降低优先级，不留下过期条目
+                    openSet.offer(nKey, fWeighted);
 
                     List<BlockPos> seg = new ArrayList<>();
                     for (int i = 1; i < d; i++) {
@@ -121,8 +130,8 @@ public final class BasicAStarPathfinder {
         }
         Collections.reverse(nodes);
 
-        Map<BlockPos, Set<BlockPos>> segments = new LinkedHashMap<>();
-        Set<BlockPos> widthCache = new HashSet<>();
+        Map<BlockPos, Records.RoadSegmentPlacement> segments = new LinkedHashMap<>();
+        LongSet widthCache = new LongOpenHashSet();
 
         for (Node n : nodes) {
             BlockPos p = n.pos;
@@ -136,19 +145,15 @@ public final class BasicAStarPathfinder {
                 else if ((dx < 0 && dz < 0) || (dx > 0 && dz > 0)) dir = RoadDirection.DIAGONAL_2;
                 else if (dx == 0 && dz != 0) dir = RoadDirection.Z_AXIS;
                 for (BlockPos ip : interp) {
-                    Set<BlockPos> ws = RoadPathCalculator.generateWidth(ip, width / 2, widthCache, dir);
+                    Records.RoadSegmentPlacement ws = RoadPathCalculator.generateWidth(ip, width / 2, widthCache, dir);
                     segments.put(ip, ws);
                 }
             }
-            Set<BlockPos> ws = RoadPathCalculator.generateWidth(p, width / 2, widthCache, dir);
+            Records.RoadSegmentPlacement ws = RoadPathCalculator.generateWidth(p, width / 2, widthCache, dir);
             segments.put(p, ws);
         }
 
-        List<Records.RoadSegmentPlacement> out = new ArrayList<>();
-        for (Map.Entry<BlockPos, Set<BlockPos>> e : segments.entrySet()) {
-            out.add(new Records.RoadSegmentPlacement(e.getKey(), new ArrayList<>(e.getValue())));
-        }
-        return out;
+        return new ArrayList<>(segments.values());
     }
     
     private static int getNeighborDistance() {
@@ -162,6 +167,10 @@ public final class BasicAStarPathfinder {
         }
     }
 
+    private static long columnKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
     private static int manhattan2d(BlockPos a, BlockPos b) {
         return Math.abs(a.getX() - b.getX()) + Math.abs(a.getZ() - b.getZ());
     }
@@ -0,0 +1,123 @@
+package net.shiroha233.roadweaver.features.roadlogic;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.util.Arrays;
+
+/**
+ * A* 开放集：以 long 为键、double 为优先级的索引二叉最小堆。
+ * 每个键在堆中至多出现一次，降低优先级时原地上浮，不产生节点对象和过期条目。
+ */
+final class LongMinHeap {
+    private long[] keys;
+    private double[] priorities;
+    // 键 -> 堆下标
+    private final Long2IntOpenHashMap index;
+    private int size;
+
+    LongMinHeap(int capacity) {
+        int cap = Math.max(16, capacity);
+        this.keys = new long[cap];
+        this.priorities = new double[cap];
+        this.index = new Long2IntOpenHashMap(cap);
+        this.index.defaultReturnValue(-1);
+    }
+
+    /**
+     * 插入键，或在新优先级更低时降低已有键的优先级；返回堆是否发生变化。
+     */
+    boolean offer(long key, double priority) {
+        int i = index.get(key);
+        if (i >= 0) {
+            if (priority >= priorities[i]) return false;
+            priorities[i] = priority;
+            siftUp(i);
+            return true;
+        }
+        if (size == keys.length) grow();
+        keys[size] = key;
+        priorities[size] = priority;
+        index.put(key, size);
+        siftUp(size++);
+        return true;
+    }
+
+    /**
+     * 取出优先级最低的键；调用前需确认堆非空。
+     */
+    long poll() {
+        long top = keys[0];
+        index.remove(top);
+        if (--size > 0) {
+            keys[0] = keys[size];
+            priorities[0] = priorities[size];
+            index.put(keys[0], 0);
+            siftDown(0);
+        }
+        return top;
+    }
+
+    double peekPriority() {
+        return priorities[0];
+    }
+
+    boolean contains(long key) {
+        return index.containsKey(key);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        size = 0;
+        index.clear();
+    }
+
+    private void siftUp(int i) {
+        long key = keys[i];
+        double p = priorities[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= p) break;
+            move(parent, i);
+            i = parent;
+        }
+        keys[i] = key;
+        priorities[i] = p;
+        index.put(key, i);
+    }
+
+    private void siftDown(int i) {
+        long key = keys[i];
+        double p = priorities[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && priorities[right] < priorities[child]) child = right;
+            if (p <= priorities[child]) break;
+            move(child, i);
+            i = child;
+        }
+        keys[i] = key;
+        priorities[i] = p;
+        index.put(key, i);
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        priorities[to] = priorities[from];
+        index.put(keys[to], to);
+    }
+
+    private void grow() {
+        int cap = keys.length + (keys.length >> 1);
+        keys = Arrays.copyOf(keys, cap);
+        priorities = Arrays.copyOf(priorities, cap);
+    }
+}
@@ -1,9 +1,11 @@
 package net.shiroha233.roadweaver.features.roadlogic;
 
-import it.unimi.dsi.fastutil.longs.Long2DoubleMap;
 import it.unimi.dsi.fastutil.longs.Long2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Holder;
 import net.minecraft.core.HolderSet;
@@ -42,6 +44,11 @@ public class OptimizedPathFinder {
     private static final int GRID_STEP = 4;
     private static final double HEURISTIC_WEIGHT = 1.5;
     private static final double HEURISTIC_SCALE = 95.0;
+    // 每展开 64 个节点检查一次线程中断
+    private static final int INTERRUPT_CHECK_MASK = 63;
+    // 单个记忆表的条目上限，超过后清空重来
+    private static final int MEMO_LIMIT = 1 << 18;
+    private static final int NO_SAMPLE = Integer.MIN_VALUE;
     
     private static final int[][] OFFSETS = generateOffsets();
     
@@ -69,82 +76,163 @@ public class OptimizedPathFinder {
     }
     
     public List<Records.RoadSegmentPlacement> findPath(BlockPos from, BlockPos to, int width) {
-        BlockPos startPos = snap(from);
-        BlockPos endPos = snap(to);
-        
-        List<BlockPos> path = aStarPositions(startPos, endPos);
-        if (path.isEmpty()) {
-            return Collections.emptyList();
-        }
-        
-        return reconstructPath(path, width);
+        Search search = search(from, to);
+        // 步数上限不超过 200000，一次即可跑完
+        search.step(Integer.MAX_VALUE);
+        return search.toSegments(width);
     }
     
-    private List<BlockPos> aStarPositions(BlockPos startPos, BlockPos endPos) {
-        long startKey = hash(startPos.getX(), startPos.getZ());
-        long endKey = hash(endPos.getX(), endPos.getZ());
-        
-        ModConfig config = ConfigService.get();
-        final double localScale = selectHeuristicScale(startPos, endPos);
-        final int localStepCap = Math.min(selectMaxSteps(startPos, endPos), 200000);
+    /**
+     * 创建一个可分段执行的搜索；由调用方反复调用 {@link Search#step(int)} 推进，可在两次调用之间暂停任意长时间。
+     */
+    public Search search(BlockPos from, BlockPos to) {
+        return new Search(snap(from), snap(to));
+    }
+    
+    /**
+     * 可恢复的 A* 搜索：开放集、g 值与父节点都保存在对象中，step 之间不丢失进度。
+     * 非线程安全，同一时刻只能由一个线程推进。
+     */
+    public final class Search {
+        private final BlockPos startPos;
+        private final BlockPos endPos;
+        private final long startKey;
+        private final long endKey;
+        private final double localScale;
+        private final int localStepCap;
+        private final int initialL1;
+        private final ModConfig config = ConfigService.get();
         
-        final int initialL1 = Math.abs(startPos.getX() - endPos.getX()) + Math.abs(startPos.getZ() - endPos.getZ());
-        int bestMd = Integer.MAX_VALUE;
-        long bestKey = startKey;
+        private final LongMinHeap open = new LongMinHeap(1024);
+        private final Long2DoubleOpenHashMap gScore = new Long2DoubleOpenHashMap();
+        private final Long2LongOpenHashMap parent = new Long2LongOpenHashMap();
         
-        PriorityQueue<PathNode> open = new PriorityQueue<>(Comparator.comparingDouble(r -> r.f));
-        Long2DoubleMap gScore = new Long2DoubleOpenHashMap();
-        gScore.defaultReturnValue(Double.MAX_VALUE);
-        Long2LongMap parent = new Long2LongOpenHashMap();
+        private int iterations;
+        private int bestMd = Integer.MAX_VALUE;
+        private long bestKey;
+        private List<BlockPos> result;
         
-        gScore.put(startKey, 0.0);
-        open.add(new PathNode(startKey, 0.0, heuristic(startPos, endPos, localScale) * HEURISTIC_WEIGHT));
+        private final Long2IntOpenHashMap heights = new Long2IntOpenHashMap();
+        private final Long2DoubleOpenHashMap stabilities = new Long2DoubleOpenHashMap();
+        private final Long2ObjectOpenHashMap<Holder<Biome>> biomes = new Long2ObjectOpenHashMap<>();
+        // 邻近惩罚的前缀和场（半径为 0 时为 null）
+        private final ProximityField forbiddenField;
+        private final ProximityField coastField;
         
-        int iterations = 0;
-        while (!open.isEmpty() && iterations++ < localStepCap) {
-            PathNode current = open.poll();
-            if (current.g > gScore.get(current.key)) {
-                continue;
-            }
-            
-            int curX = (int) (current.key >> 32);
-            int curZ = (int) current.key;
-            int curY = sampleHeight(curX, curZ);
+        private Search(BlockPos startPos, BlockPos endPos) {
+            this.startPos = startPos;
+            this.endPos = endPos;
+            this.startKey = hash(startPos.getX(), startPos.getZ());
+            this.endKey = hash(endPos.getX(), endPos.getZ());
+            this.localScale = selectHeuristicScale(startPos, endPos);
+            this.localStepCap = Math.min(selectMaxSteps(startPos, endPos), 200000);
+            this.initialL1 = Math.abs(startPos.getX() - endPos.getX()) + Math.abs(startPos.getZ() - endPos.getZ());
+            this.bestKey = startKey;
+            // 每个网格点恰好对应一个生物群系 quart，指示值直接读生物群系记忆表
+            int forbiddenRadius = Math.max(0, config.forbiddenBiomeBufferBlocks()) / GRID_STEP;
+            int coastRadius = Math.max(0, config.coastAvoidBufferBlocks()) / GRID_STEP;
+            this.forbiddenField = forbiddenRadius > 0
+                ? new ProximityField(forbiddenRadius, (gx, gz) -> isForbiddenBiome(biome(gx * GRID_STEP, gz * GRID_STEP)))
+                : null;
+            this.coastField = coastRadius > 0
+                ? new ProximityField(coastRadius, (gx, gz) -> isWater(biome(gx * GRID_STEP, gz * GRID_STEP)))
+                : null;
             
-            int md = Math.abs(curX - endPos.getX()) + Math.abs(curZ - endPos.getZ());
-            if (md < bestMd) {
-                bestMd = md;
-                bestKey = current.key;
+            gScore.defaultReturnValue(Double.MAX_VALUE);
+            heights.defaultReturnValue(NO_SAMPLE);
+            stabilities.defaultReturnValue(Double.NaN);
+            gScore.put(startKey, 0.0);
+            open.offer(startKey, heuristic(startPos, endPos, localScale) * HEURISTIC_WEIGHT);
+        }
+        
+        /**
+         * 最多展开 budget 个节点；搜索结束（找到路径、接受部分路径或失败）时返回 true。
+         */
+        public boolean step(int budget) {
+            if (result != null) return true;
+            int remaining = budget;
+            while (!open.isEmpty() && iterations < localStepCap) {
+                if (remaining-- <= 0) return false;
+                // 被中断时保留进度直接返回，由调用方决定放弃或稍后继续
+                if ((iterations & INTERRUPT_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) return false;
+                iterations++;
+                long current = open.poll();
+                
+                int curX = (int) (current >> 32);
+                int curZ = (int) current;
+                int curY = height(curX, curZ);
+                
+                int md = Math.abs(curX - endPos.getX()) + Math.abs(curZ - endPos.getZ());
+                if (md < bestMd) {
+                    bestMd = md;
+                    bestKey = current;
+                }
+                
+                if (current == endKey) {
+                    complete(reconstructVertices(current));
+                    return true;
+                }
+                
+                expand(current, curX, curZ, curY);
             }
-            
-            if (current.key == endKey) {
-                return reconstructVertices(current.key, startKey, parent);
+            complete(finish());
+            return true;
+        }
+        
+        /**
+         * 提前结束搜索（例如多次超时）：按部分路径规则从当前最优节点回溯。
+         */
+        public void stop() {
+            if (result == null) complete(finish());
+        }
+        
+        public boolean isDone() {
+            return result != null;
+        }
+        
+        public int iterations() {
+            return iterations;
+        }
+        
+        // 搜索结束后的顶点序列；失败时为空
+        public List<BlockPos> result() {
+            return result != null ? result : Collections.emptyList();
+        }
+        
+        public List<Records.RoadSegmentPlacement> toSegments(int width) {
+            List<BlockPos> path = result();
+            if (path.isEmpty()) {
+                return Collections.emptyList();
             }
-            
+            return reconstructPath(path, width);
+        }
+        
+        private void expand(long current, int curX, int curZ, int curY) {
+            double curG = gScore.get(current);
             for (int[] off : OFFSETS) {
                 int nx = curX + off[0];
                 int nz = curZ + off[1];
                 long neighKey = hash(nx, nz);
                 
-                int ny = sampleHeight(nx, nz);
+                int ny = height(nx, nz);
                 if (isSteep(curY, ny)) {
                     continue;
                 }
                 
-                double stab = sampleStability(nx, nz, ny);
+                double stab = stability(nx, nz, ny);
                 if (stab == Double.MAX_VALUE) {
                     continue;
                 }
                 
-                Holder<Biome> bEntry = sampleBiome(nx, nz, ny);
+                Holder<Biome> bEntry = biome(nx, nz);
                 if (isForbiddenBiome(bEntry)) {
                     continue;
                 }
                 double bCost = biomeCost(bEntry);
                 
                 double preferWaterPenalty = (config.preferLandOverWater() && isWater(bEntry)) ? config.waterStepPenalty() : 0.0;
-                double proxPenalty = forbiddenProximityPenalty(nx, nz, ny);
-                double coastPenalty = coastProximityPenalty(nx, nz, ny);
+                double proxPenalty = forbiddenProximityPenalty(nx, nz);
+                double coastPenalty = coastProximityPenalty(nx, nz);
                 
                 double inc = stepCost(off)
                     + elevationCost(curY, ny)
@@ -155,35 +243,125 @@ public class OptimizedPathFinder {
                     + proxPenalty
                     + coastPenalty;
                 
-                double tentativeG = gScore.get(current.key) + inc;
+                double tentativeG = curG + inc;
                 
                 if (tentativeG < gScore.get(neighKey)) {
-                    parent.put(neighKey, current.key);
+                    parent.put(neighKey, current);
                     gScore.put(neighKey, tentativeG);
                     double f = tentativeG + heuristic(nx, nz, endPos, localScale) * HEURISTIC_WEIGHT;
-                    open.add(new PathNode(neighKey, tentativeG, f));
+                    // 已在开放集中时原地降低优先级
+                    open.offer(neighKey, f);
                 }
             }
         }
         
-        // 部分路径接受
-        boolean canAcceptPartial = initialL1 > 0 && bestMd != Integer.MAX_VALUE && config.acceptPartialPaths();
-        double progress = canAcceptPartial ? (double) (initialL1 - bestMd) / (double) initialL1 : 0.0;
-        if (canAcceptPartial && progress >= config.partialProgressThreshold()) {
-            List<BlockPos> partial = reconstructVertices(bestKey, startKey, parent);
-            if (!partial.isEmpty()) {
-                LOGGER.info("Accept partial path (progress={}%, len={}, threshold={}%) {} -> {}",
-                    String.format(Locale.ROOT, "%.1f", progress * 100.0),
-                    partial.size(),
-                    String.format(Locale.ROOT, "%.1f", config.partialProgressThreshold() * 100.0),
-                    startPos.toShortString(), endPos.toShortString());
-                return partial;
+        // 以下采样按网格列记忆化：每列在一次搜索中最多向噪声生成器查询一次
+        private int height(int x, int z) {
+            long k = hash(x, z);
+            int h = heights.get(k);
+            if (h == NO_SAMPLE) {
+                h = sampleHeight(x, z);
+                if (heights.size() >= MEMO_LIMIT) heights.clear();
+                heights.put(k, h);
+            }
+            return h;
+        }
+        
+        private double stability(int x, int z, int y) {
+            long k = hash(x, z);
+            double v = stabilities.get(k);
+            if (Double.isNaN(v)) {
+                v = sampleStability(x, z, y);
+                if (stabilities.size() >= MEMO_LIMIT) stabilities.clear();
+                stabilities.put(k, v);
             }
+            return v;
         }
         
-        LOGGER.info("Path not found between {} and {} after {} iterations",
-            startPos, endPos, Math.min(iterations, localStepCap));
-        return Collections.emptyList();
+        // 生物群系按 quart（4 格）取样，键取所在 quart 即可
+        private Holder<Biome> biome(int x, int z) {
+            long k = hash(QuartPos.fromBlock(x), QuartPos.fromBlock(z));
+            Holder<Biome> b = biomes.get(k);
+            if (b == null) {
+                b = sampleBiome(x, z);
+                if (biomes.size() >= MEMO_LIMIT) biomes.clear();
+                biomes.put(k, b);
+            }
+            return b;
+        }
+        
+        /**
+         * 释放地形采样记忆表（暂停保留期间调用）；记忆表可随时重建，继续搜索只需开放集、g 值与父节点。
+         */
+        public void releaseMemo() {
+            heights.clear();
+            heights.trim();
+            stabilities.clear();
+            stabilities.trim();
+            biomes.clear();
+            biomes.trim();
+            if (forbiddenField != null) forbiddenField.clear();
+            if (coastField != null) coastField.clear();
+        }
+        
+        // 搜索结束：记录结果并释放记忆表与搜索状态
+        private void complete(List<BlockPos> path) {
+            result = path;
+            releaseMemo();
+            gScore.clear();
+            gScore.trim();
+            parent.clear();
+            parent.trim();
+            open.clear();
+        }
+        
+        private double forbiddenProximityPenalty(int x, int z) {
+            if (forbiddenField == null) return 0.0;
+            return forbiddenField.anyNear(Math.floorDiv(x, GRID_STEP), Math.floorDiv(z, GRID_STEP))
+                ? config.forbiddenBiomeProximityPenalty() : 0.0;
+        }
+        
+        private double coastProximityPenalty(int x, int z) {
+            if (!config.preferLandOverWater() || coastField == null) return 0.0;
+            return coastField.anyNear(Math.floorDiv(x, GRID_STEP), Math.floorDiv(z, GRID_STEP))
+                ? config.coastProximityPenalty() : 0.0;
+        }
+        
+        private List<BlockPos> reconstructVertices(long goal) {
+            List<BlockPos> vertices = new ArrayList<>();
+            for (long k = goal; ; k = parent.get(k)) {
+                int x = (int) (k >> 32);
+                int z = (int) k;
+                int y = height(x, z);
+                vertices.add(new BlockPos(x, y, z));
+                if (k == startKey) {
+                    break;
+                }
+            }
+            Collections.reverse(vertices);
+            return vertices;
+        }
+        
+        // 开放集耗尽或达到步数上限：尝试接受部分路径
+        private List<BlockPos> finish() {
+            boolean canAcceptPartial = initialL1 > 0 && bestMd != Integer.MAX_VALUE && config.acceptPartialPaths();
+            double progress = canAcceptPartial ? (double) (initialL1 - bestMd) / (double) initialL1 : 0.0;
+            if (canAcceptPartial && progress >= config.partialProgressThreshold()) {
+                List<BlockPos> partial = reconstructVertices(bestKey);
+                if (!partial.isEmpty()) {
+                    LOGGER.info("Accept partial path (progress={}%, len={}, threshold={}%) {} -> {}",
+                        String.format(Locale.ROOT, "%.1f", progress * 100.0),
+                        partial.size(),
+                        String.format(Locale.ROOT, "%.1f", config.partialProgressThreshold() * 100.0),
+                        startPos.toShortString(), endPos.toShortString());
+                    return partial;
+                }
+            }
+            
+            LOGGER.info("Path not found between {} and {} after {} iterations",
+                startPos, endPos, iterations);
+            return Collections.emptyList();
+        }
     }
     
     private int sampleHeight(int x, int z) {
@@ -194,7 +372,7 @@ public class OptimizedPathFinder {
         return RoadPathCalculator.calculateTerrainStability(new BlockPos(x, y, z), y, world);
     }
     
-    private Holder<Biome> sampleBiome(int x, int z, int y) {
+    private Holder<Biome> sampleBiome(int x, int z) {
         return biomeSource.getNoiseBiome(
             QuartPos.fromBlock(x),
             316,
@@ -232,48 +410,6 @@ public class OptimizedPathFinder {
         return 0.0;
     }
     
-    private double forbiddenProximityPenalty(int x, int z, int y) {
-        ModConfig cfg = ConfigService.get();
-        int buf = cfg.forbiddenBiomeBufferBlocks();
-        if (buf <= 0) return 0.0;
-        int radiusSteps = buf / GRID_STEP;
-        if (radiusSteps <= 0) return 0.0;
-        
-        for (int i = -radiusSteps; i <= radiusSteps; i++) {
-            for (int j = -radiusSteps; j <= radiusSteps; j++) {
-                if (i == 0 && j == 0) continue;
-                int checkX = x + i * GRID_STEP;
-                int checkZ = z + j * GRID_STEP;
-                if (isForbiddenBiome(sampleBiome(checkX, checkZ, y))) {
-                    return cfg.forbiddenBiomeProximityPenalty();
-                }
-            }
-        }
-        return 0.0;
-    }
-    
-    private double coastProximityPenalty(int x, int z, int y) {
-        ModConfig cfg = ConfigService.get();
-        if (!cfg.preferLandOverWater()) return 0.0;
-        int buf = cfg.coastAvoidBufferBlocks();
-        if (buf <= 0) return 0.0;
-        int radiusSteps = buf / GRID_STEP;
-        if (radiusSteps <= 0) return 0.0;
-        
-        for (int i = -radiusSteps; i <= radiusSteps; i++) {
-            for (int j = -radiusSteps; j <= radiusSteps; j++) {
-                if (i == 0 && j == 0) continue;
-                int checkX = x + i * GRID_STEP;
-                int checkZ = z + j * GRID_STEP;
-                Holder<Biome> b = sampleBiome(checkX, checkZ, y);
-                if (isWater(b)) {
-                    return cfg.coastProximityPenalty();
-                }
-            }
-        }
-        return 0.0;
-    }
-    
     private static double yLevelCost(int y) {
         return y <= 63 ? 240.0 : 0.0;
     }
@@ -331,24 +467,9 @@ public class OptimizedPathFinder {
         return ((long) x << 32) | (z & 0xFFFFFFFFL);
     }
     
-    private List<BlockPos> reconstructVertices(long goal, long start, Long2LongMap parent) {
-        List<BlockPos> vertices = new ArrayList<>();
-        for (long k = goal; ; k = parent.get(k)) {
-            int x = (int) (k >> 32);
-            int z = (int) k;
-            int y = sampleHeight(x, z);
-            vertices.add(new BlockPos(x, y, z));
-            if (k == start) {
-                break;
-            }
-        }
-        Collections.reverse(vertices);
-        return vertices;
-    }
-    
     private List<Records.RoadSegmentPlacement> reconstructPath(List<BlockPos> path, int width) {
-        Map<BlockPos, Set<BlockPos>> segments = new LinkedHashMap<>();
-        Set<BlockPos> widthCache = new HashSet<>();
+        Map<BlockPos, Records.RoadSegmentPlacement> segments = new LinkedHashMap<>();
+        LongSet widthCache = new LongOpenHashSet();
         
         for (int i = 0; i < path.size(); i++) {
             BlockPos p = path.get(i);
@@ -363,15 +484,11 @@ public class OptimizedPathFinder {
                 else if (dx == 0 && dz != 0) dir = RoadDirection.Z_AXIS;
             }
             
-            Set<BlockPos> ws = RoadPathCalculator.generateWidth(p, width / 2, widthCache, dir);
+            Records.RoadSegmentPlacement ws = RoadPathCalculator.generateWidth(p, width / 2, widthCache, dir);
             segments.put(p, ws);
         }
         
-        List<Records.RoadSegmentPlacement> out = new ArrayList<>();
-        for (Map.Entry<BlockPos, Set<BlockPos>> e : segments.entrySet()) {
-            out.add(new Records.RoadSegmentPlacement(e.getKey(), new ArrayList<>(e.getValue())));
-        }
-        return out;
+        return new ArrayList<>(segments.values());
     }
     
     private static List<HolderSet<Biome>> compileBiomeSelectors(Registry<Biome> registry, List<String> selectors) {
@@ -396,19 +513,4 @@ public class OptimizedPathFinder {
         }
         return false;
     }
-    
-    /**
-     * 路径节点内部类，用于A*算法
-     */
-    private static class PathNode {
-        final long key;
-        final double g;
-        final double f;
-        
-        PathNode(long key, double g, double f) {
-            this.key = key;
-            this.g = g;
-            this.f = f;
-        }
-    }
 }
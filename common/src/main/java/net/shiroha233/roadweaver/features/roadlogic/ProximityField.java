@@ -0,0 +1,77 @@
+package net.shiroha233.roadweaver.features.roadlogic;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * 网格点邻近判定：(gx, gz) 周围 r 格的方形邻域内（不含自身）是否存在指示值为真的点。
+ * 按 16×16 场块（各带 r 格外边）缓存指示值的二维前缀和，每次查询为两次区域求和，
+ * 结果与逐点检查 (2r+1)² 个位置完全一致。非线程安全，随单次搜索使用。
+ */
+final class ProximityField {
+    // 场块边长：2^4 = 16 个网格点
+    static final int SHIFT = 4;
+    static final int SIZE = 1 << SHIFT;
+    private static final int LIMIT = 1024;
+
+    @FunctionalInterface
+    interface Indicator {
+        boolean test(int gx, int gz);
+    }
+
+    private final int radius;
+    private final Indicator indicator;
+    private final Long2ObjectOpenHashMap<int[]> tiles = new Long2ObjectOpenHashMap<>();
+
+    ProximityField(int radius, Indicator indicator) {
+        this.radius = radius;
+        this.indicator = indicator;
+    }
+
+    boolean anyNear(int gx, int gz) {
+        int r = radius;
+        int tx = gx >> SHIFT;
+        int tz = gz >> SHIFT;
+        long key = ((long) tx << 32) | (tz & 0xFFFFFFFFL);
+        int[] sums = tiles.get(key);
+        if (sums == null) {
+            sums = build(tx, tz);
+            if (tiles.size() >= LIMIT) tiles.clear();
+            tiles.put(key, sums);
+        }
+        int stride = SIZE + 2 * r + 1;
+        // 场块带 r 格外边，局部坐标 lx 即邻域窗口左上角
+        int lx = gx - (tx << SHIFT);
+        int lz = gz - (tz << SHIFT);
+        int all = boxSum(sums, stride, lx, lz, lx + 2 * r + 1, lz + 2 * r + 1);
+        int self = boxSum(sums, stride, lx + r, lz + r, lx + r + 1, lz + r + 1);
+        return all - self > 0;
+    }
+
+    void clear() {
+        tiles.clear();
+        tiles.trim();
+    }
+
+    // 计算一个场块（含 r 格外边）的指示值前缀和
+    private int[] build(int tx, int tz) {
+        int r = radius;
+        int n = SIZE + 2 * r;
+        int stride = n + 1;
+        int[] sums = new int[stride * stride];
+        int baseX = (tx << SHIFT) - r;
+        int baseZ = (tz << SHIFT) - r;
+        for (int pz = 0; pz < n; pz++) {
+            int row = 0;
+            for (int px = 0; px < n; px++) {
+                if (indicator.test(baseX + px, baseZ + pz)) row++;
+                sums[(pz + 1) * stride + px + 1] = sums[pz * stride + px + 1] + row;
+            }
+        }
+        return sums;
+    }
+
+    // 前缀和上 [x0, x1) × [z0, z1) 的计数
+    private static int boxSum(int[] sums, int stride, int x0, int z0, int x1, int z1) {
+        return sums[z1 * stride + x1] - sums[z0 * stride + x1] - sums[z1 * stride + x0] + sums[z0 * stride + x0];
+    }
+}
@@ -1,5 +1,6 @@
 package net.shiroha233.roadweaver.features.roadlogic;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.util.RandomSource;
@@ -11,18 +12,40 @@ import net.shiroha233.roadweaver.config.BiomeStyleService;
 import net.shiroha233.roadweaver.config.RoadStyleConfigEntry;
 import net.shiroha233.roadweaver.debug.DebugService;
 import net.shiroha233.roadweaver.features.RoadClearanceService;
+import net.shiroha233.roadweaver.features.placement.RoadPlacementPlan;
 import net.shiroha233.roadweaver.helpers.Records;
-import net.shiroha233.roadweaver.persistence.WorldDataProvider;
+import net.shiroha233.roadweaver.generation.GenerationCommitQueue;
 import net.shiroha233.roadweaver.features.decoration.system.RoadDecorationSystem;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 public final class Road {
     private final ServerLevel level;
     private final Records.StructureConnection connection;
     private final RoadFeatureConfig config;
 
+    // 两次检查是否让路之间展开的节点数
+    private static final int SEARCH_SLICE = 2048;
+    // 超时次数达到上限后不再重试，直接按部分路径规则结束
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * 一次 generateRoad 调用的结果。YIELDED 与 TIMED_OUT 都保留了搜索进度，可再次调用继续；
+     * NO_ROAD 表示生成已结束但没有道路可写入（维度不匹配、未允许人工道路或路径过短）；
+     * CANCELLED 表示线程被中断，不应发布任何结果。
+     */
+    public enum Progress { DONE, NO_ROAD, YIELDED, TIMED_OUT, CANCELLED }
+
+    // 以下为分段生成时跨调用保留的状态
+    private OptimizedPathFinder.Search search;
+    private int width;
+    private List<BlockState> materials;
+    private long elapsedNanos;
+    // 本轮尝试已用的计算时间（不含暂停），超时后清零
+    private long attemptNanos;
+    private int attempts;
+
     public Road(ServerLevel level, Records.StructureConnection connection, RoadFeatureConfig config) {
         this.level = level;
         this.connection = connection;
@@ -30,52 +53,103 @@ public final class Road {
     }
 
     public void generateRoad(int maxSteps) {
+        Progress p;
+        do {
+            p = generateRoad(maxSteps, () -> false);
+        } while (p == Progress.TIMED_OUT);
+    }
+
+    /**
+     * 分段生成：优化寻路每推进 SEARCH_SLICE 个节点检查一次中断、超时与 shouldYield。
+     * 让路或超时时保留搜索进度并返回，之后在任意线程上再次调用即可从暂停处继续；
+     * 单轮计算时间超过 pathfindingTimeoutSeconds 记一次超时，第 MAX_ATTEMPTS 次超时按当前最优的部分路径结束。
+     */
+    public Progress generateRoad(int maxSteps, BooleanSupplier shouldYield) {
         DebugService debugService = DebugService.getInstance();
         long startTime = System.nanoTime();
-        
-        RandomSource random = RandomSource.create();
         ModConfig cfg = ConfigService.get();
-        
-        // 检查维度选择器
-        if (!cfg.dimensionSelector().isEmpty() && !cfg.dimensionSelector().equals("*")) {
-            String dimensionName = level.dimension().location().toString();
-            if (!dimensionName.equals(cfg.dimensionSelector())) {
-                debugService.logDebug("Road generation skipped: dimension " + dimensionName + " not in selector " + cfg.dimensionSelector());
-                return;
+
+        if (search == null) {
+            RandomSource random = RandomSource.create();
+            
+            // 检查维度选择器
+            if (!cfg.dimensionSelector().isEmpty() && !cfg.dimensionSelector().equals("*")) {
+                String dimensionName = level.dimension().location().toString();
+                if (!dimensionName.equals(cfg.dimensionSelector())) {
+                    debugService.logDebug("Road generation skipped: dimension " + dimensionName + " not in selector " + cfg.dimensionSelector());
+                    return Progress.NO_ROAD;
+                }
             }
-        }
-        
-        if (!cfg.allowArtificial()) return;
-        
-        // 获取生物群系特定样式
-        RoadStyleConfigEntry biomeStyle = BiomeStyleService.getBiomeStyle(level, connection.from());
-        int width = cfg.roadWidth() > 0 ? cfg.roadWidth() : getRandomWidth(random, config);
-        int type = 0;
-        
-        // 使用生物群系样式或默认材料
-        List<BlockState> materials;
-        if (biomeStyle != null && !biomeStyle.surfacePalette().isEmpty()) {
-            materials = biomeStyle.surfacePalette();
-            debugService.logDebug("Using biome-specific road style for " + level.getBiome(connection.from()).unwrap().location());
-        } else {
-            materials = RoadDecorationSystem.selectMaterials(random, config);
+            
+            if (!cfg.allowArtificial()) return Progress.NO_ROAD;
+            
+            // 获取生物群系特定样式
+            RoadStyleConfigEntry biomeStyle = BiomeStyleService.getBiomeStyle(level, connection.from());
+            width = cfg.roadWidth() > 0 ? cfg.roadWidth() : getRandomWidth(random, config);
+            
+            // 使用生物群系样式或默认材料
+            if (biomeStyle != null && !biomeStyle.surfacePalette().isEmpty()) {
+                materials = biomeStyle.surfacePalette();
+                debugService.logDebug("Using biome-specific road style for " + level.getBiome(connection.from()).unwrap().location());
+            } else {
+                materials = RoadDecorationSystem.selectMaterials(random, config);
+            }
+
+            BlockPos start = connection.from();
+            BlockPos end = connection.to();
+            if (!cfg.enableOptimizedPathfinding()) {
+                List<Records.RoadSegmentPlacement> segments = RoadPathCalculator.calculateAStarRoadPath(start, end, width, level, maxSteps);
+                if (Thread.currentThread().isInterrupted()) return Progress.CANCELLED;
+                return finish(segments, cfg, startTime) ? Progress.DONE : Progress.NO_ROAD;
+            }
+            // 使用优化的路径查找器（可分段推进）
+            search = new OptimizedPathFinder(level).search(start, end);
+            debugService.logDebug("Using optimized pathfinder with partial acceptance: " + cfg.acceptPartialPaths());
         }
 
-        BlockPos start = connection.from();
-        BlockPos end = connection.to();
-        
-        // 使用优化的路径查找器
-        List<Records.RoadSegmentPlacement> segments;
-        if (cfg.enableOptimizedPathfinding()) {
-            segments = OptimizedPathFinder.findPath(start, end, width, level, maxSteps, cfg.partialPathAcceptance());
-            debugService.logDebug("Using optimized pathfinder with partial acceptance: " + cfg.partialPathAcceptance());
-        } else {
-            segments = RoadPathCalculator.calculateAStarRoadPath(start, end, width, level, maxSteps);
+        long timeoutNanos = cfg.pathfindingTimeoutSeconds() * 1_000_000_000L;
+        while (!search.step(SEARCH_SLICE)) {
+            if (Thread.currentThread().isInterrupted()) return Progress.CANCELLED;
+            long now = System.nanoTime();
+            if (attemptNanos + now - startTime > timeoutNanos) {
+                if (++attempts < MAX_ATTEMPTS) {
+                    pause(startTime);
+                    attemptNanos = 0;
+                    return Progress.TIMED_OUT;
+                }
+                debugService.logDebug("Pathfinding gave up after " + attempts + " timeouts, " + search.iterations() + " iterations");
+                search.stop();
+                break;
+            }
+            if (shouldYield.getAsBoolean()) {
+                pause(startTime);
+                return Progress.YIELDED;
+            }
         }
+        return finish(search.toSegments(width), cfg, startTime) ? Progress.DONE : Progress.NO_ROAD;
+    }
+
+    /**
+     * 搜索进度被保留等待稍后继续时调用：丢弃可重建的地形采样记忆表，只留下继续搜索所需的状态。
+     */
+    public void releaseSamples() {
+        if (search != null) search.releaseMemo();
+    }
+
+    private void pause(long startTime) {
+        long spent = System.nanoTime() - startTime;
+        elapsedNanos += spent;
+        attemptNanos += spent;
+    }
+
+    // 发布道路并返回 true；路径缺失或过短时不发布，返回 false
+    private boolean finish(List<Records.RoadSegmentPlacement> segments, ModConfig cfg, long startTime) {
+        DebugService debugService = DebugService.getInstance();
+        int type = 0;
         
         if (segments == null || segments.size() < 5) {
             debugService.logDebug("Pathfinding failed or insufficient segments: " + (segments == null ? "null" : segments.size()));
-            return;
+            return false;
         }
         
         // 执行路线清理
@@ -87,15 +161,19 @@ public final class Road {
         
         List<Records.RoadSpan> spans = RoadPathCalculator.extractSpans(segments, level);
 
-        WorldDataProvider provider = WorldDataProvider.getInstance();
-        List<Records.RoadData> list = new ArrayList<>(provider.getRoadDataList(level));
-        list.add(new Records.RoadData(width, type, materials, segments, spans));
-        provider.setRoadDataList(level, list);
+        Records.RoadData data = new Records.RoadData(width, type, materials, segments, spans);
+        // 寻路完成后立即预计算各区块的放置计划，区块装饰阶段只需按计划写入
+        Long2ObjectOpenHashMap<RoadPlacementPlan.Piece> plans =
+                RoadPlacementPlan.build(data, cfg, (x, z) -> RoadPathCalculator.heightSampler(x, z, level));
+
+        // 生成线程只发布结果，由服务器线程统一写入区域分片与区块索引
+        GenerationCommitQueue.publishRoad(level, connection, data, plans);
         
-        // 记录性能指标
+        // 记录性能指标（包含暂停前各段的耗时）
         long endTime = System.nanoTime();
-        double durationMs = (endTime - startTime) / 1_000_000.0;
+        double durationMs = (elapsedNanos + endTime - startTime) / 1_000_000.0;
         debugService.logPerformance("Road generation completed", durationMs, segments.size());
+        return true;
     }
 
     
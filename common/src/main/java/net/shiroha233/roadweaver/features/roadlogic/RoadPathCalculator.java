@@ -7,11 +7,12 @@ import net.minecraft.tags.BiomeTags;
 import net.minecraft.world.level.biome.Biome;
 import net.minecraft.world.level.levelgen.Heightmap;
 import net.minecraft.world.level.levelgen.RandomState;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.helpers.WidthTemplate;
 import net.shiroha233.roadweaver.config.ConfigService;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 public final class RoadPathCalculator {
     private RoadPathCalculator() {}
@@ -27,15 +28,6 @@ public final class RoadPathCalculator {
         }
     }
 
-    public static final Map<Long, Integer> heightCache = new ConcurrentHashMap<>();
-    public static final Map<Long, Boolean> waterCache = new ConcurrentHashMap<>();
-    public static final Map<Long, Integer> oceanFloorCache = new ConcurrentHashMap<>();
-    public static final Map<Long, Boolean> nearWaterCache = new ConcurrentHashMap<>();
-    public static final Map<Long, Boolean> columnWaterCache = new ConcurrentHashMap<>();
-
-    private static long hashXZ(int x, int z) {
-        return ((long) x << 32) | (z & 0xffffffffL);
-    }
 
     public static List<Records.RoadSegmentPlacement> calculateAStarRoadPath(BlockPos startIn, BlockPos endIn, int width, ServerLevel level, int maxSteps) {
         int dGrid = getNeighborDistance();
@@ -67,36 +59,40 @@ public final class RoadPathCalculator {
 
     
 
-    static int heightSampler(int x, int z, ServerLevel level) {
-        long key = hashXZ(x, z);
-        return heightCache.computeIfAbsent(key, k -> {
-            RandomState rs = level.getChunkSource().getGeneratorState().randomState();
-            return level.getChunkSource().getGenerator().getBaseHeight(x, z, Heightmap.Types.WORLD_SURFACE_WG, level, rs);
-        });
+    public static int heightSampler(int x, int z, ServerLevel level) {
+        TerrainCache cache = TerrainCache.get(level);
+        int h = cache.height(x, z);
+        if (h != TerrainCache.UNKNOWN) return h;
+        RandomState rs = level.getChunkSource().getGeneratorState().randomState();
+        h = level.getChunkSource().getGenerator().getBaseHeight(x, z, Heightmap.Types.WORLD_SURFACE_WG, level, rs);
+        cache.putHeight(x, z, h);
+        return h;
     }
 
     static boolean isWaterLike(int x, int z, ServerLevel level) {
-        long key = hashXZ(x, z);
-        Boolean v = waterCache.get(key);
-        if (v != null) return v;
+        TerrainCache cache = TerrainCache.get(level);
+        int v = cache.flag(x, z, TerrainCache.WATER);
+        if (v >= 0) return v == 1;
         Holder<Biome> biome = level.getBiome(new BlockPos(x, 0, z));
         boolean res = biome.is(BiomeTags.IS_RIVER) || biome.is(BiomeTags.IS_OCEAN) || biome.is(BiomeTags.IS_DEEP_OCEAN);
-        waterCache.put(key, res);
+        cache.putFlag(x, z, TerrainCache.WATER, res);
         return res;
     }
 
     static int oceanFloorSampler(int x, int z, ServerLevel level) {
-        long key = hashXZ(x, z);
-        return oceanFloorCache.computeIfAbsent(key, k -> {
-            RandomState rs = level.getChunkSource().getGeneratorState().randomState();
-            return level.getChunkSource().getGenerator().getBaseHeight(x, z, Heightmap.Types.OCEAN_FLOOR_WG, level, rs);
-        });
+        TerrainCache cache = TerrainCache.get(level);
+        int h = cache.oceanFloor(x, z);
+        if (h != TerrainCache.UNKNOWN) return h;
+        RandomState rs = level.getChunkSource().getGeneratorState().randomState();
+        h = level.getChunkSource().getGenerator().getBaseHeight(x, z, Heightmap.Types.OCEAN_FLOOR_WG, level, rs);
+        cache.putOceanFloor(x, z, h);
+        return h;
     }
 
     static boolean isNearWaterLike(int x, int z, ServerLevel level) {
-        long key = hashXZ(x, z);
-        Boolean cached = nearWaterCache.get(key);
-        if (cached != null) return cached;
+        TerrainCache cache = TerrainCache.get(level);
+        int cached = cache.flag(x, z, TerrainCache.NEAR_WATER);
+        if (cached >= 0) return cached == 1;
         int d = getNeighborDistance();
         int[][] neighborOffsets = new int[][]{
                 {d, 0}, {-d, 0}, {0, d}, {0, -d},
@@ -106,18 +102,18 @@ public final class RoadPathCalculator {
             int nx = x + off[0];
             int nz = z + off[1];
             if (isWaterLike(nx, nz, level)) {
-                nearWaterCache.put(key, true);
+                cache.putFlag(x, z, TerrainCache.NEAR_WATER, true);
                 return true;
             }
         }
-        nearWaterCache.put(key, false);
+        cache.putFlag(x, z, TerrainCache.NEAR_WATER, false);
         return false;
     }
 
     static boolean isColumnWater(int x, int z, ServerLevel level) {
-        long key = hashXZ(x, z);
-        Boolean cached = columnWaterCache.get(key);
-        if (cached != null) return cached;
+        TerrainCache cache = TerrainCache.get(level);
+        int cached = cache.flag(x, z, TerrainCache.COLUMN_WATER);
+        if (cached >= 0) return cached == 1;
         int ws = heightSampler(x, z, level);
         int of = oceanFloorSampler(x, z, level);
         int sea = level.getSeaLevel();
@@ -128,7 +124,7 @@ public final class RoadPathCalculator {
                 res = level.getFluidState(check).is(net.minecraft.tags.FluidTags.WATER);
             }
         }
-        columnWaterCache.put(key, res);
+        cache.putFlag(x, z, TerrainCache.COLUMN_WATER, res);
         return res;
     }
 
@@ -136,36 +132,41 @@ public final class RoadPathCalculator {
         return Math.floorDiv(v, gridSize) * gridSize;
     }
 
-    static Set<BlockPos> generateWidth(BlockPos center, int radius, Set<BlockPos> cache, RoadDirection dir) {
-        Set<BlockPos> set = new HashSet<>();
+    /**
+     * 生成中心点的宽度段：按模板顺序枚举，已被之前段占用的方块（cache 中已有）不再计入。
+     * 只记录方向、半径与存在位图，宽度方块在放置时按需展开。
+     */
+    static Records.RoadSegmentPlacement generateWidth(BlockPos center, int radius, LongSet cache, RoadDirection dir) {
         int cx = center.getX();
         int cz = center.getZ();
         int y = 0;
-        if (dir == RoadDirection.X_AXIS) {
-            for (int dz = -radius; dz <= radius; dz++) {
-                BlockPos p = new BlockPos(cx, y, cz + dz);
-                if (cache.add(p)) set.add(p);
-            }
-        } else if (dir == RoadDirection.Z_AXIS) {
-            for (int dx = -radius; dx <= radius; dx++) {
-                BlockPos p = new BlockPos(cx + dx, y, cz);
-                if (cache.add(p)) set.add(p);
-            }
-        } else {
+        if (radius > WidthTemplate.MAX_RADIUS) {
+            List<BlockPos> list = new ArrayList<>();
             for (int dx = -radius; dx <= radius; dx++) {
                 for (int dz = -radius; dz <= radius; dz++) {
-                    if (dir == RoadDirection.DIAGONAL_2) {
-                        if ((dx == -radius && dz == -radius) || (dx == radius && dz == radius)) continue;
-                    }
-                    if (dir == RoadDirection.DIAGONAL_1) {
-                        if ((dx == -radius && dz == radius) || (dx == radius && dz == -radius)) continue;
-                    }
-                    BlockPos p = new BlockPos(cx + dx, y, cz + dz);
-                    if (cache.add(p)) set.add(p);
+                    if (!inWidth(dx, dz, radius, dir)) continue;
+                    if (cache.add(BlockPos.asLong(cx + dx, y, cz + dz))) list.add(new BlockPos(cx + dx, y, cz + dz));
                 }
             }
+            return WidthTemplate.compact(center, list);
+        }
+        byte code = (byte) (dir.ordinal() + 1);
+        int[] offsets = WidthTemplate.offsets(code, radius);
+        long[] mask = WidthTemplate.newMask(code, radius);
+        for (int i = 0; i < offsets.length / 2; i++) {
+            if (cache.add(BlockPos.asLong(cx + offsets[i * 2], y, cz + offsets[i * 2 + 1]))) WidthTemplate.set(mask, i);
+        }
+        return new Records.RoadSegmentPlacement(center, code, (byte) radius, mask);
+    }
+
+    // 超出模板半径时的显式枚举（顺序与模板一致）
+    private static boolean inWidth(int dx, int dz, int radius, RoadDirection dir) {
+        if (dir == RoadDirection.X_AXIS) return dx == 0;
+        if (dir == RoadDirection.Z_AXIS) return dz == 0;
+        if (dir == RoadDirection.DIAGONAL_2) {
+            return !((dx == -radius && dz == -radius) || (dx == radius && dz == radius));
         }
-        return set;
+        return !((dx == -radius && dz == radius) || (dx == radius && dz == -radius));
     }
 
     public static List<Records.RoadSpan> extractSpans(List<Records.RoadSegmentPlacement> segments, ServerLevel level) {
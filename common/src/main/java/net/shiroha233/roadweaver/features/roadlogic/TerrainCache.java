@@ -0,0 +1,189 @@
+package net.shiroha233.roadweaver.features.roadlogic;
+
+import net.minecraft.server.level.ServerLevel;
+import net.shiroha233.roadweaver.config.ConfigService;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按维度划分的地形采样缓存（Common）。
+ * 以 32×32 列为一块，每块用基本类型数组保存地表高度、海底高度与三种水域标记；
+ * 块按最近使用顺序淘汰，总量不超过 terrainCacheMegabytes，维度卸载或服务器停止时释放。
+ * 数组元素的读写不加锁：同一列的采样结果是确定的，并发写入只会写入相同的值。
+ */
+public final class TerrainCache {
+
+    static final int UNKNOWN = Integer.MIN_VALUE;
+
+    // 标记字段：每个字段占 2 位（已知位 + 值位）
+    static final int WATER = 0;
+    static final int NEAR_WATER = 2;
+    static final int COLUMN_WATER = 4;
+
+    private static final int TILE_SHIFT = 5;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final int TILE_COLUMNS = TILE_SIZE * TILE_SIZE;
+    // 两个 int 数组 + 一个 byte 数组，另计对象与映射开销
+    private static final int TILE_BYTES = TILE_COLUMNS * (4 + 4 + 1) + 128;
+
+    private static final Map<ServerLevel, TerrainCache> CACHES = new ConcurrentHashMap<>();
+    // 每个线程最近访问的块；寻路与放置的访问在空间上高度连续，大多数查询不需要进入锁
+    private static final ThreadLocal<Tile> LAST = new ThreadLocal<>();
+    // 线程本地命中每隔这么多次进锁一次，刷新块在淘汰顺序中的位置（2 的幂）
+    private static final int TOUCH_INTERVAL = 64;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    // 只记录所属缓存的编号，线程本地引用不会让已卸载的整个缓存无法回收
+    private static final class Tile {
+        final int owner;
+        final long key;
+        final int[] height = new int[TILE_COLUMNS];
+        final int[] oceanFloor = new int[TILE_COLUMNS];
+        final byte[] flags = new byte[TILE_COLUMNS];
+        // 已被淘汰：线程本地引用不再可用，之后的写入会丢失
+        volatile boolean evicted;
+        // 不加锁的计数，只用于决定何时刷新访问顺序，丢失几次递增无妨
+        int shortcutHits;
+
+        Tile(int owner, long key) {
+            this.owner = owner;
+            this.key = key;
+            Arrays.fill(height, UNKNOWN);
+            Arrays.fill(oceanFloor, UNKNOWN);
+        }
+    }
+
+    private final int id = NEXT_ID.incrementAndGet();
+    private final int maxTiles;
+    private final LinkedHashMap<Long, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+            if (size() <= maxTiles) return false;
+            eldest.getValue().evicted = true;
+            evictions.incrementAndGet();
+            return true;
+        }
+    };
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private TerrainCache(int maxTiles) {
+        this.maxTiles = maxTiles;
+    }
+
+    public static TerrainCache get(ServerLevel level) {
+        return CACHES.computeIfAbsent(level, l -> {
+            long budget = (long) ConfigService.get().terrainCacheMegabytes() * 1024L * 1024L;
+            return new TerrainCache((int) Math.max(64, budget / TILE_BYTES));
+        });
+    }
+
+    public static void unload(ServerLevel level) {
+        CACHES.remove(level);
+    }
+
+    public static void clearAll() {
+        CACHES.clear();
+    }
+
+    int height(int x, int z) {
+        return record(tile(x, z).height[index(x, z)]);
+    }
+
+    void putHeight(int x, int z, int v) {
+        tile(x, z).height[index(x, z)] = v;
+    }
+
+    int oceanFloor(int x, int z) {
+        return record(tile(x, z).oceanFloor[index(x, z)]);
+    }
+
+    void putOceanFloor(int x, int z, int v) {
+        tile(x, z).oceanFloor[index(x, z)] = v;
+    }
+
+    /**
+     * 读取标记；未缓存时返回 -1，否则返回 0 或 1。
+     */
+    int flag(int x, int z, int field) {
+        int bits = (tile(x, z).flags[index(x, z)] >> field) & 3;
+        if ((bits & 1) == 0) {
+            misses.increment();
+            return -1;
+        }
+        hits.increment();
+        return bits >> 1;
+    }
+
+    void putFlag(int x, int z, int field, boolean v) {
+        Tile t = tile(x, z);
+        int i = index(x, z);
+        // 同一字节内不同字段的并发写入可能互相覆盖，最坏情况只是少一次命中
+        t.flags[i] = (byte) (t.flags[i] | ((v ? 3 : 1) << field));
+    }
+
+    public synchronized int tileCount() {
+        return tiles.size();
+    }
+
+    public long memoryBytes() {
+        return (long) tileCount() * TILE_BYTES;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    // 命中率（0~1），没有查询时为 0
+    public double hitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    private int record(int v) {
+        if (v == UNKNOWN) misses.increment();
+        else hits.increment();
+        return v;
+    }
+
+    private Tile tile(int x, int z) {
+        long key = ((long) (x >> TILE_SHIFT) << 32) | ((z >> TILE_SHIFT) & 0xffffffffL);
+        Tile last = LAST.get();
+        if (last != null && last.owner == id && last.key == key && !last.evicted
+                && (++last.shortcutHits & (TOUCH_INTERVAL - 1)) != 0) {
+            return last;
+        }
+        Tile t;
+        synchronized (this) {
+            t = tiles.get(key);
+            if (t == null) {
+                t = new Tile(id, key);
+                tiles.put(key, t);
+            }
+        }
+        LAST.set(t);
+        return t;
+    }
+
+    private static int index(int x, int z) {
+        return ((z & TILE_MASK) << TILE_SHIFT) | (x & TILE_MASK);
+    }
+}
@@ -0,0 +1,121 @@
+package net.shiroha233.roadweaver.generation;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.server.level.ServerLevel;
+import net.shiroha233.roadweaver.features.placement.RoadChunkIndex;
+import net.shiroha233.roadweaver.features.placement.RoadPlacementPlan;
+import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.ConnectionJournal;
+import net.shiroha233.roadweaver.persistence.WorldDataProvider;
+import net.shiroha233.roadweaver.planning.PlanningUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 生成结果提交队列：生成线程只负责发布结果（新道路、状态迁移），
+ * 由服务器线程每 tick 按批次取出并写入世界数据，世界数据只有单一写入者。
+ */
+public final class GenerationCommitQueue {
+    private GenerationCommitQueue() {}
+
+    public static final int MAX_COMMITS_PER_TICK = 256;
+
+    private static final Map<ServerLevel, ConcurrentLinkedQueue<Commit>> QUEUES = new ConcurrentHashMap<>();
+    // 道路未能写入的边：随后到达的 COMPLETED 不再提交（仅服务器线程访问）
+    private static final Map<ServerLevel, LongOpenHashSet> REJECTED = new ConcurrentHashMap<>();
+
+    private interface Commit {}
+
+    private record RoadCommit(Records.StructureConnection conn,
+                              Records.RoadData data,
+                              Long2ObjectOpenHashMap<RoadPlacementPlan.Piece> plans) implements Commit {}
+
+    private record StatusCommit(Records.StructureConnection conn, Records.ConnectionStatus status) implements Commit {}
+
+    private record NoRoadCommit(Records.StructureConnection conn) implements Commit {}
+
+    /**
+     * 发布一条新道路及其按区块预计算的放置计划；计划随道路一起提交，不会在提交前单独驻留。
+     */
+    public static void publishRoad(ServerLevel level, Records.StructureConnection conn, Records.RoadData data,
+                                   Long2ObjectOpenHashMap<RoadPlacementPlan.Piece> plans) {
+        if (level == null || conn == null || data == null) return;
+        queue(level).add(new RoadCommit(conn, data, plans));
+    }
+
+    public static void publishStatus(ServerLevel level, Records.StructureConnection conn, Records.ConnectionStatus status) {
+        if (level == null || conn == null || status == null) return;
+        queue(level).add(new StatusCommit(conn, status));
+    }
+
+    /**
+     * 生成已结束但没有道路可写入：连接标记为 COMPLETED，并在日志中记录无需等待道路落盘。
+     */
+    public static void publishNoRoad(ServerLevel level, Records.StructureConnection conn) {
+        if (level == null || conn == null) return;
+        queue(level).add(new NoRoadCommit(conn));
+    }
+
+    /**
+     * 在服务器线程上应用至多 max 条提交，返回实际应用的条数。
+     */
+    public static int drain(ServerLevel level, int max) {
+        ConcurrentLinkedQueue<Commit> q = QUEUES.get(level);
+        if (q == null) return 0;
+        WorldDataProvider provider = WorldDataProvider.getInstance();
+        int n = 0;
+        Commit c;
+        while (n < max && (c = q.poll()) != null) {
+            apply(level, provider, c);
+            n++;
+        }
+        return n;
+    }
+
+    public static int drainAll(ServerLevel level) {
+        return drain(level, Integer.MAX_VALUE);
+    }
+
+    public static boolean isEmpty(ServerLevel level) {
+        ConcurrentLinkedQueue<Commit> q = QUEUES.get(level);
+        return q == null || q.isEmpty();
+    }
+
+    /**
+     * 服务器停止前写入全部剩余提交，然后清空。
+     */
+    public static void flushAll() {
+        QUEUES.keySet().forEach(GenerationCommitQueue::drainAll);
+        QUEUES.clear();
+        REJECTED.clear();
+    }
+
+    private static ConcurrentLinkedQueue<Commit> queue(ServerLevel level) {
+        return QUEUES.computeIfAbsent(level, l -> new ConcurrentLinkedQueue<>());
+    }
+
+    private static void apply(ServerLevel level, WorldDataProvider provider, Commit c) {
+        if (c instanceof RoadCommit rc) {
+            if (!provider.addRoadData(level, rc.conn(), rc.data())) {
+                // 道路没有落盘的位置：连接退回 PLANNED，下次启动时重新生成，而不是标记完成后丢失道路
+                REJECTED.computeIfAbsent(level, l -> new LongOpenHashSet()).add(PlanningUtils.edgeKey(rc.conn().from(), rc.conn().to()));
+                provider.updateConnectionStatus(level, rc.conn(), Records.ConnectionStatus.PLANNED);
+                return;
+            }
+            RoadChunkIndex.onRoadAdded(level, rc.data(), rc.plans());
+        } else if (c instanceof StatusCommit sc) {
+            LongOpenHashSet rejected = REJECTED.get(level);
+            if (rejected != null && rejected.remove(PlanningUtils.edgeKey(sc.conn().from(), sc.conn().to()))
+                    && sc.status() == Records.ConnectionStatus.COMPLETED) {
+                return;
+            }
+            provider.updateConnectionStatus(level, sc.conn(), sc.status());
+        } else if (c instanceof NoRoadCommit nc) {
+            provider.updateConnectionStatus(level, nc.conn(), Records.ConnectionStatus.COMPLETED);
+            ConnectionJournal.get(level).noRoad(nc.conn());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package net.shiroha233.roadweaver.generation;
+
+import net.shiroha233.roadweaver.config.ModConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成线程池的创建（Common）。
+ * 默认使用工作窃取的 ForkJoinPool（FIFO 模式）；也可选固定线程池，或在运行时支持时使用虚拟线程。
+ * 平台线程均为低优先级守护线程，并使用模组类加载器作为上下文类加载器。
+ */
+final class GenerationExecutors {
+    private GenerationExecutors() {}
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("roadweaver");
+
+    private static final String THREAD_PREFIX = "RoadWeaver-Gen-";
+    // 低于服务器线程，避免与主线程抢占 CPU
+    private static final int THREAD_PRIORITY = Thread.NORM_PRIORITY - 2;
+
+    private static volatile String backend = "none";
+
+    static ExecutorService create(ModConfig.ExecutorMode mode, int threads) {
+        int n = Math.max(1, threads);
+        if (mode == ModConfig.ExecutorMode.VIRTUAL) {
+            ExecutorService virtual = tryVirtual();
+            if (virtual != null) {
+                backend = "virtual";
+                return virtual;
+            }
+            LOGGER.info("RoadWeaver: virtual threads are not available on this runtime, using fork-join pool");
+        } else if (mode == ModConfig.ExecutorMode.FIXED) {
+            backend = "fixed(" + n + ")";
+            return Executors.newFixedThreadPool(n, platformFactory());
+        }
+        backend = "fork-join(" + n + ")";
+        return new ForkJoinPool(n, GenerationExecutors::newWorker, null, true);
+    }
+
+    // 实际使用的后端，用于状态命令
+    static String backend() {
+        return backend;
+    }
+
+    // Java 21+：Executors.newVirtualThreadPerTaskExecutor；编译目标为 17，只能反射调用
+    private static ExecutorService tryVirtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread t = new ForkJoinWorkerThread(pool) {};
+        t.setName(THREAD_PREFIX + t.getPoolIndex());
+        configure(t);
+        return t;
+    }
+
+    private static ThreadFactory platformFactory() {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, THREAD_PREFIX + index.getAndIncrement());
+            configure(t);
+            return t;
+        };
+    }
+
+    private static void configure(Thread t) {
+        t.setDaemon(true);
+        t.setPriority(THREAD_PRIORITY);
+        t.setContextClassLoader(GenerationExecutors.class.getClassLoader());
+    }
+}
@@ -0,0 +1,132 @@
+package net.shiroha233.roadweaver.generation;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerPlayer;
+import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.RoadShardStorage;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 按区域分桶的生成调度器（每个维度一个）。
+ * 待生成连接按中点所在区域归桶，桶按到最近在线玩家所在区域的距离排序；
+ * 取任务只需取最近的桶（O(log 桶数)），玩家跨越区域边界时才重新计算各桶优先级。
+ */
+final class GenerationScheduler {
+
+    private static final long NO_PLAYER = Long.MAX_VALUE;
+
+    private static final class Bucket {
+        final long key;
+        final int rx;
+        final int rz;
+        final ArrayDeque<Records.StructureConnection> queue = new ArrayDeque<>();
+        long priority;
+
+        Bucket(long key) {
+            this.key = key;
+            this.rx = (int) (key >> 32);
+            this.rz = (int) key;
+        }
+    }
+
+    private final Long2ObjectOpenHashMap<Bucket> buckets = new Long2ObjectOpenHashMap<>();
+    // 只包含非空桶
+    private final TreeSet<Bucket> order = new TreeSet<>(Comparator
+            .comparingLong((Bucket b) -> b.priority)
+            .thenComparingLong(b -> b.key));
+    private LongOpenHashSet playerRegions = new LongOpenHashSet();
+    private int size;
+
+    synchronized void add(Records.StructureConnection c) {
+        long key = regionOf(c);
+        Bucket b = buckets.get(key);
+        if (b == null) {
+            b = new Bucket(key);
+            buckets.put(key, b);
+        }
+        if (b.queue.isEmpty()) {
+            b.priority = priority(b);
+            order.add(b);
+        }
+        b.queue.add(c);
+        size++;
+    }
+
+    /**
+     * 取出离玩家最近区域中的下一条连接；队列为空时返回 null。
+     */
+    synchronized Records.StructureConnection poll() {
+        Bucket b = order.isEmpty() ? null : order.first();
+        if (b == null) return null;
+        Records.StructureConnection c = b.queue.poll();
+        if (b.queue.isEmpty()) {
+            order.remove(b);
+            buckets.remove(b.key);
+        }
+        size--;
+        return c;
+    }
+
+    /**
+     * 同步在线玩家所在区域；只有区域集合变化时才重新排序各桶。
+     */
+    synchronized void updatePlayers(List<ServerPlayer> players) {
+        LongOpenHashSet regions = new LongOpenHashSet(players.size());
+        for (ServerPlayer p : players) {
+            BlockPos pos = p.blockPosition();
+            regions.add(RoadShardStorage.regionKey(pos.getX(), pos.getZ()));
+        }
+        if (regions.equals(playerRegions)) return;
+        playerRegions = regions;
+        order.clear();
+        for (Bucket b : buckets.values()) {
+            b.priority = priority(b);
+            order.add(b);
+        }
+    }
+
+    /**
+     * 是否有待生成连接所在的区域比 c 更靠近玩家；用于让远处的搜索暂停让路。
+     */
+    synchronized boolean hasNearerThan(Records.StructureConnection c) {
+        if (order.isEmpty()) return false;
+        long region = regionOf(c);
+        return order.first().priority < priority((int) (region >> 32), (int) region);
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // 到最近玩家所在区域的区域距离平方；无玩家时所有桶同级，按区域键顺序
+    private long priority(Bucket b) {
+        return priority(b.rx, b.rz);
+    }
+
+    private long priority(int rx, int rz) {
+        if (playerRegions.isEmpty()) return NO_PLAYER;
+        long best = NO_PLAYER;
+        for (long region : playerRegions) {
+            long dx = (long) (int) (region >> 32) - rx;
+            long dz = (long) (int) region - rz;
+            best = Math.min(best, dx * dx + dz * dz);
+        }
+        return best;
+    }
+
+    private static long regionOf(Records.StructureConnection c) {
+        int mx = (c.from().getX() + c.to().getX()) >> 1;
+        int mz = (c.from().getZ() + c.to().getZ()) >> 1;
+        return RoadShardStorage.regionKey(mx, mz);
+    }
+}
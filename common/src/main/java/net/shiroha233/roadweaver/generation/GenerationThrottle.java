@@ -0,0 +1,90 @@
+package net.shiroha233.roadweaver.generation;
+
+import net.minecraft.server.MinecraftServer;
+import net.shiroha233.roadweaver.config.ConfigService;
+import net.shiroha233.roadweaver.config.ModConfig;
+
+/**
+ * 基于服务器 MSPT 的生成节流器（加性增、乘性减）。
+ * 每 ADJUST_INTERVAL_TICKS 读取一次服务器平均 tick 耗时：高于目标时并发上限与每 tick 派发数减半，
+ * 低于目标的 LOW_WATERMARK 倍时各加一，介于两者之间保持不变；并发上限不超过 maxConcurrentGenerations。
+ * 两个上限都是服务器全局的：并发上限约束所有维度合计的运行数，每 tick 派发数由各维度按 tick 顺序共用。
+ */
+public final class GenerationThrottle {
+    private GenerationThrottle() {}
+
+    private static final int ADJUST_INTERVAL_TICKS = 20;
+    private static final double LOW_WATERMARK = 0.8;
+
+    private static int lastTick = -1;
+    // -1 表示尚未初始化
+    private static int concurrency = -1;
+    private static int dispatchPerTick;
+    // 本 tick 已派发数（所有维度合计）
+    private static int dispatched;
+    private static double lastMspt;
+
+    /**
+     * 每个服务器 tick 调用；同一 tick 内多次调用只生效一次。
+     */
+    public static synchronized void update(MinecraftServer server) {
+        int now = server.getTickCount();
+        if (now == lastTick) return;
+        lastTick = now;
+        dispatched = 0;
+        ModConfig cfg = ConfigService.get();
+        int max = Math.max(1, cfg.maxConcurrentGenerations());
+        lastMspt = server.getAverageTickTime();
+        if (!cfg.adaptiveThrottle() || concurrency < 0) {
+            concurrency = max;
+            dispatchPerTick = max;
+            return;
+        }
+        if (concurrency > max) concurrency = max;
+        if (now % ADJUST_INTERVAL_TICKS != 0) return;
+        double target = cfg.targetMspt();
+        if (lastMspt > target) {
+            concurrency = Math.max(1, concurrency / 2);
+            dispatchPerTick = Math.max(1, dispatchPerTick / 2);
+        } else if (lastMspt < target * LOW_WATERMARK) {
+            concurrency = Math.min(max, concurrency + 1);
+            dispatchPerTick = Math.min(concurrency, dispatchPerTick + 1);
+        }
+    }
+
+    public static synchronized void reset() {
+        lastTick = -1;
+        concurrency = -1;
+        dispatchPerTick = 0;
+        dispatched = 0;
+        lastMspt = 0.0;
+    }
+
+    // 当前允许同时进行的生成数
+    public static synchronized int concurrency() {
+        return Math.max(1, concurrency);
+    }
+
+    // 当前每 tick 最多派发的生成数
+    public static synchronized int dispatchPerTick() {
+        return Math.max(1, dispatchPerTick);
+    }
+
+    // 本 tick 的全局派发额度是否还有剩余
+    public static synchronized boolean canDispatch() {
+        return dispatched < dispatchPerTick();
+    }
+
+    public static synchronized void onDispatched() {
+        dispatched++;
+    }
+
+    // 平均 tick 耗时低于目标的 LOW_WATERMARK 倍，可以做额外的预规划
+    public static synchronized boolean hasHeadroom() {
+        return lastTick >= 0 && lastMspt < ConfigService.get().targetMspt() * LOW_WATERMARK;
+    }
+
+    public static synchronized double lastMspt() {
+        return lastMspt;
+    }
+}
@@ -4,10 +4,14 @@ import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.Level;
 import net.shiroha233.roadweaver.config.ConfigService;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.ConnectionJournal;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 import net.shiroha233.roadweaver.planning.RoadPlanningService;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 初始道路生成管理器：在服务器启动后，阻塞直到初始规划范围内的道路生成完成，并提供进度统计。
@@ -48,53 +52,61 @@ public final class InitialGenManager {
         // 进行初始规划：写入结构连接（PLANNED）
         RoadPlanningService.initialPlan(level);
 
-        // 统计总数
-        WorldDataProvider provider = WorldDataProvider.getInstance();
-        List<Records.StructureConnection> conns = provider.getStructureConnections(level);
-        total = (conns == null) ? 0 : conns.size();
-        // 初始化一次完成度
+        // 统计总数与完成度
         update(level);
     }
 
     /**
-     * 循环推进生成并阻塞直到全部完成或总数为0。
-     * 注意：在服务器启动线程中调用，期间不会触发常规 tick，因此这里主动调用 tick 推进队列与执行。
+     * 并行生成初始连接并阻塞直到全部完成。
+     * 在服务器启动线程中调用，期间不会触发常规 tick：连接分发到生成线程池（同时在途不超过线程数），
+     * 生成结果与运行时一样经提交队列发布，由当前线程写入世界数据并刷新进度统计。
      */
     public static void blockUntilDone(ServerLevel level) {
         if (!active) return;
-        // 采用同步方式逐条生成，确保在世界生成前完成（避免依赖线程池和玩家列表）
         WorldDataProvider provider = WorldDataProvider.getInstance();
-        List<Records.StructureConnection> list = provider.getStructureConnections(level);
-        if (list != null) {
-            for (Records.StructureConnection c : new java.util.ArrayList<>(list)) {
-                if (c.status() == Records.ConnectionStatus.PLANNED) {
-                    RoadGenerationService.generateInline(level, c);
-                    update(level);
+        List<Records.StructureConnection> pending = new ArrayList<>();
+        for (Records.StructureConnection c : provider.getStructureConnections(level)) {
+            if (c.status() == Records.ConnectionStatus.PLANNED) pending.add(c);
+        }
+        int threads = Math.max(1, ConfigService.get().generationThreads());
+        ConnectionJournal journal = ConnectionJournal.get(level);
+        Semaphore finished = new Semaphore(0);
+        int next = 0;
+        int running = 0;
+        try {
+            while (next < pending.size() || running > 0) {
+                while (next < pending.size() && running < threads) {
+                    RoadGenerationService.dispatch(level, pending.get(next++), finished::release);
+                    running++;
+                }
+                // 等待任意一条完成（或超时后顺带提交已发布的结果）
+                if (finished.tryAcquire(50, TimeUnit.MILLISECONDS)) {
+                    running--;
+                    running -= finished.drainPermits();
                 }
+                GenerationCommitQueue.drain(level, GenerationCommitQueue.MAX_COMMITS_PER_TICK);
+                journal.sync();
+                update(level);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            GenerationCommitQueue.drainAll(level);
+            journal.sync();
+            update(level);
+            active = false;
         }
-        active = false;
     }
 
     /**
-     * 读取世界数据统计完成数量。
+     * 读取连接存储维护的各状态计数（无需遍历连接列表）。
      */
     public static void update(ServerLevel level) {
-        WorldDataProvider provider = WorldDataProvider.getInstance();
-        List<Records.StructureConnection> conns = provider.getStructureConnections(level);
-        if (conns == null) { total = 0; planned = 0; generating = 0; done = 0; failed = 0; return; }
-        int p = 0, g = 0, c = 0, f = 0;
-        for (Records.StructureConnection sc : conns) {
-            Records.ConnectionStatus s = sc.status();
-            if (s == Records.ConnectionStatus.PLANNED) p++;
-            else if (s == Records.ConnectionStatus.GENERATING) g++;
-            else if (s == Records.ConnectionStatus.COMPLETED) c++;
-            else if (s == Records.ConnectionStatus.FAILED) f++;
-        }
-        total = conns.size();
-        planned = p;
-        generating = g;
-        done = c;
-        failed = f;
+        int[] counts = WorldDataProvider.getInstance().getConnectionStatusCounts(level);
+        planned = counts[Records.ConnectionStatus.PLANNED.ordinal()];
+        generating = counts[Records.ConnectionStatus.GENERATING.ordinal()];
+        done = counts[Records.ConnectionStatus.COMPLETED.ordinal()];
+        failed = counts[Records.ConnectionStatus.FAILED.ordinal()];
+        total = planned + generating + done + failed;
     }
 }
@@ -1,106 +1,208 @@
 package net.shiroha233.roadweaver.generation;
 
-import net.minecraft.core.BlockPos;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.levelgen.feature.ConfiguredFeature;
 import net.shiroha233.roadweaver.features.config.RoadFeatureConfig;
+import net.shiroha233.roadweaver.features.placement.RoadChunkIndex;
 import net.shiroha233.roadweaver.features.roadlogic.Road;
+import net.shiroha233.roadweaver.features.roadlogic.RoadPathCalculator;
+import net.shiroha233.roadweaver.features.roadlogic.TerrainCache;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.AsyncDataWriter;
+import net.shiroha233.roadweaver.persistence.ConnectionJournal;
+import net.shiroha233.roadweaver.persistence.RoadShardStorage;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 import net.shiroha233.roadweaver.planning.PlanningUtils;
+import net.shiroha233.roadweaver.planning.RoadPlanningService;
 import net.shiroha233.roadweaver.config.ConfigService;
 import net.shiroha233.roadweaver.config.ModConfig;
 
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public final class RoadGenerationService {
     private RoadGenerationService() {}
 
     private static volatile ExecutorService EXECUTOR = null;
-    private static final ConcurrentHashMap<ServerLevel, ConcurrentLinkedQueue<Records.StructureConnection>> QUEUES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ServerLevel, GenerationScheduler> QUEUES = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<ServerLevel, ConcurrentHashMap<Long, Boolean>> PROCESSED = new ConcurrentHashMap<>();
     private static final ConcurrentHashMap<ServerLevel, AtomicInteger> RUNNING_COUNT = new ConcurrentHashMap<>();
+    // 所有维度合计的运行数，节流器的并发上限作用于它；重置时换新实例，旧任务结束时不影响新计数
+    private static volatile AtomicInteger RUNNING_TOTAL = new AtomicInteger();
     private static final Set<Future<?>> ALL_RUNNING = ConcurrentHashMap.newKeySet();
+    // 正在执行生成的线程；ForkJoinTask.cancel 不会中断线程，停止时直接中断它们
+    private static final Set<Thread> WORKERS = ConcurrentHashMap.newKeySet();
+    // 最近一分钟内完成的生成时间戳（毫秒），用于统计吞吐
+    private static final ArrayDeque<Long> COMPLETIONS = new ArrayDeque<>();
+    private static final long THROUGHPUT_WINDOW_MS = 60_000L;
+    // 让路暂停的生成任务（按边键），保留寻路进度，再次出队时继续
+    private static final ConcurrentHashMap<ServerLevel, ConcurrentHashMap<Long, Road>> PAUSED = new ConcurrentHashMap<>();
+    // 同时保留的暂停任务上限（让路与超时共用），超过后就地继续，避免搜索状态占用过多内存
+    private static final int MAX_PAUSED = 16;
+    // 已完成启动扫描的维度；之后的新连接由规划器直接入队
+    private static final Set<ServerLevel> BOOTSTRAPPED = ConcurrentHashMap.newKeySet();
 
     private static final ResourceLocation ROAD_CF_ID = new ResourceLocation("roadweaver", "road_feature");
+    // 检查可归档区域的间隔（tick）
+    private static final int ARCHIVE_INTERVAL_TICKS = 1200;
+    // 队列空闲时预规划的间隔（tick）
+    private static final int SPECULATIVE_INTERVAL_TICKS = 40;
 
     public static void onServerStopping() {
         ALL_RUNNING.forEach(f -> f.cancel(true));
         ALL_RUNNING.clear();
+        WORKERS.forEach(Thread::interrupt);
         if (EXECUTOR != null) EXECUTOR.shutdownNow();
+        // 写入已完成但尚未提交的结果
+        GenerationCommitQueue.flushAll();
         QUEUES.clear();
         PROCESSED.clear();
         RUNNING_COUNT.clear();
+        RUNNING_TOTAL = new AtomicInteger();
+        PAUSED.clear();
+        BOOTSTRAPPED.clear();
+        GenerationThrottle.reset();
+        RoadChunkIndex.clearAll();
+        RoadShardStorage.clearAll();
+        TerrainCache.clearAll();
     }
 
     /**
-     * 同步生成，用于世界生成前的阻塞阶段（单线程）。
+     * 维度卸载时调用：释放该维度的地形缓存，关闭其道路归档并停止后续归档构建。
      */
-    public static void generateInline(ServerLevel level, Records.StructureConnection conn) {
-        if (level == null || conn == null) return;
-        WorldDataProvider provider = WorldDataProvider.getInstance();
-        try {
-            // 标记为 GENERATING
-            List<Records.StructureConnection> all0 = new ArrayList<>(provider.getStructureConnections(level));
-            for (int i = 0; i < all0.size(); i++) {
-                Records.StructureConnection c = all0.get(i);
-                if (sameEdge(c, conn)) {
-                    all0.set(i, new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.GENERATING));
-                }
-            }
-            if (!all0.isEmpty()) provider.setStructureConnections(level, all0);
-            // 立即刷新一次统计，让加载界面能显示“生成中”数量
-            InitialGenManager.update(level);
-            try { Thread.sleep(10); } catch (InterruptedException ignored) {}
-
-            // 配置
-            var reg = level.registryAccess().registryOrThrow(net.minecraft.core.registries.Registries.CONFIGURED_FEATURE);
-            ConfiguredFeature<?, ?> cf = reg.get(ROAD_CF_ID);
-            RoadFeatureConfig cfg;
-            if (cf != null && cf.config() instanceof RoadFeatureConfig rfc) cfg = rfc; else cfg = defaultConfig();
+    public static void onLevelUnload(ServerLevel level) {
+        TerrainCache.unload(level);
+        RoadShardStorage.unload(level);
+    }
 
-            // 生成
-            new Road(level, conn, cfg).generateRoad(5000);
+    /**
+     * 服务器完全停止后调用：等待后台写线程写完最后一次保存。
+     */
+    public static void onServerStopped() {
+        AsyncDataWriter.awaitIdle();
+        ConnectionJournal.closeAll();
+    }
 
-            // 标记 COMPLETED
-            List<Records.StructureConnection> all = new ArrayList<>(provider.getStructureConnections(level));
-            for (int i = 0; i < all.size(); i++) {
-                Records.StructureConnection c = all.get(i);
-                if (sameEdge(c, conn)) {
-                    all.set(i, new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.COMPLETED));
-                }
-            }
-            provider.setStructureConnections(level, all);
-        } catch (Throwable t) {
-            // 标记 FAILED
-            List<Records.StructureConnection> all = new ArrayList<>(provider.getStructureConnections(level));
-            for (int i = 0; i < all.size(); i++) {
-                Records.StructureConnection c = all.get(i);
-                if (sameEdge(c, conn)) {
-                    all.set(i, new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.FAILED));
-                }
-            }
-            provider.setStructureConnections(level, all);
+    /**
+     * 标记为 GENERATING 并提交到生成线程池；结果经提交队列由调用 drain 的线程写回。
+     * onDone 在生成线程上、结果发布之后调用。
+     */
+    static void dispatch(ServerLevel level, Records.StructureConnection conn, Runnable onDone) {
+        if (EXECUTOR == null || EXECUTOR.isShutdown() || EXECUTOR.isTerminated()) {
+            EXECUTOR = newExecutor();
         }
+        WorldDataProvider.getInstance().updateConnectionStatus(level, conn, Records.ConnectionStatus.GENERATING);
+        Future<?> fut = EXECUTOR.submit(() -> {
+            Thread self = Thread.currentThread();
+            WORKERS.add(self);
+            try {
+                safeGenerate(level, conn);
+            } finally {
+                WORKERS.remove(self);
+                onDone.run();
+            }
+        });
+        ALL_RUNNING.add(fut);
     }
 
     public static void onServerStarted() {
-        int threads = Math.max(1, ConfigService.get().generationThreads());
         if (EXECUTOR != null && !EXECUTOR.isShutdown() && !EXECUTOR.isTerminated()) {
             EXECUTOR.shutdownNow();
         }
-        EXECUTOR = Executors.newFixedThreadPool(threads);
+        EXECUTOR = newExecutor();
         ALL_RUNNING.clear();
+        synchronized (COMPLETIONS) {
+            COMPLETIONS.clear();
+        }
         QUEUES.clear();
         PROCESSED.clear();
         RUNNING_COUNT.clear();
+        RUNNING_TOTAL = new AtomicInteger();
+        PAUSED.clear();
+        BOOTSTRAPPED.clear();
+        GenerationThrottle.reset();
+    }
+
+    private static ExecutorService newExecutor() {
+        ModConfig cfg = ConfigService.get();
+        return GenerationExecutors.create(cfg.executorMode(), cfg.generationThreads());
+    }
+
+    // 实际使用的线程池后端
+    public static String executorBackend() {
+        return GenerationExecutors.backend();
+    }
+
+    /**
+     * 最近一分钟内完成的生成数（道路/分钟），固定种子下可用于比较不同线程池模式。
+     */
+    public static int roadsPerMinute() {
+        synchronized (COMPLETIONS) {
+            trimCompletions(System.currentTimeMillis());
+            return COMPLETIONS.size();
+        }
+    }
+
+    private static void recordCompletion() {
+        long now = System.currentTimeMillis();
+        synchronized (COMPLETIONS) {
+            COMPLETIONS.addLast(now);
+            trimCompletions(now);
+        }
+    }
+
+    private static void trimCompletions(long now) {
+        while (!COMPLETIONS.isEmpty() && now - COMPLETIONS.peekFirst() > THROUGHPUT_WINDOW_MS) {
+            COMPLETIONS.pollFirst();
+        }
+    }
+
+    public static int queuedCount(ServerLevel level) {
+        GenerationScheduler q = QUEUES.get(level);
+        return q != null ? q.size() : 0;
+    }
+
+    public static int runningCount(ServerLevel level) {
+        AtomicInteger cnt = RUNNING_COUNT.get(level);
+        return cnt != null ? cnt.get() : 0;
+    }
+
+    public static int runningTotal() {
+        return RUNNING_TOTAL.get();
+    }
+
+    /**
+     * 规划器写入新连接后调用：只把待生成的新边加入该维度的生成队列。
+     */
+    public static void enqueue(ServerLevel level, Records.StructureConnection c) {
+        if (level == null || c == null) return;
+        if (c.status() != Records.ConnectionStatus.PLANNED && c.status() != Records.ConnectionStatus.GENERATING) return;
+        ConcurrentHashMap<Long, Boolean> proc = PROCESSED.computeIfAbsent(level, l -> new ConcurrentHashMap<>());
+        if (proc.putIfAbsent(PlanningUtils.edgeKey(c.from(), c.to()), Boolean.TRUE) != null) return;
+        QUEUES.computeIfAbsent(level, l -> new GenerationScheduler()).add(c);
+    }
+
+    public static void enqueueAll(ServerLevel level, List<Records.StructureConnection> connections) {
+        if (connections == null) return;
+        for (Records.StructureConnection c : connections) enqueue(level, c);
+    }
+
+    /**
+     * 连接被移除后调用：忘记其边键并丢弃保留的搜索进度，同一条边之后重新规划时可以再次入队。
+     */
+    public static void forget(ServerLevel level, Records.StructureConnection c) {
+        if (level == null || c == null) return;
+        long key = PlanningUtils.edgeKey(c.from(), c.to());
+        ConcurrentHashMap<Long, Boolean> proc = PROCESSED.get(level);
+        if (proc != null) proc.remove(key);
+        ConcurrentHashMap<Long, Road> paused = PAUSED.get(level);
+        if (paused != null) paused.remove(key);
     }
 
     public static void tick(ServerLevel level) {
@@ -108,71 +210,81 @@ public final class RoadGenerationService {
         if (!isDimensionAllowed(level)) {
             return;
         }
-        
-        refreshQueue(level);
-        ConcurrentLinkedQueue<Records.StructureConnection> q = QUEUES.computeIfAbsent(level, l -> new ConcurrentLinkedQueue<>());
-        if (q.isEmpty()) return;
-        if (EXECUTOR == null || EXECUTOR.isShutdown() || EXECUTOR.isTerminated()) {
-            int threads = Math.max(1, ConfigService.get().generationThreads());
-            EXECUTOR = Executors.newFixedThreadPool(threads);
+
+        // 首次访问时重放状态日志，必须先于启动扫描读取连接状态
+        ConnectionJournal journal = ConnectionJournal.get(level);
+        // 服务器线程是世界数据的唯一写入者：先提交生成线程发布的结果
+        GenerationCommitQueue.drain(level, GenerationCommitQueue.MAX_COMMITS_PER_TICK);
+        // 上一 tick 与本次提交的状态迁移合并为一次 fsync
+        journal.sync();
+        RoadShardStorage storage = WorldDataProvider.getInstance().getRoadStorage(level);
+        storage.applyArchived();
+        if (level.getGameTime() % ARCHIVE_INTERVAL_TICKS == 0) archiveIdleRegions(level, storage);
+        // 启动后每个维度只全量扫描一次，之后由规划器推送新连接
+        if (BOOTSTRAPPED.add(level)) bootstrapQueue(level);
+        GenerationScheduler q = QUEUES.computeIfAbsent(level, l -> new GenerationScheduler());
+        // 并发上限与本 tick 派发数由 MSPT 节流器决定，二者都是所有维度共用的
+        GenerationThrottle.update(level.getServer());
+        if (q.isEmpty()) {
+            // 队列空闲且服务器有余量时，提前规划玩家尚未到达的 tile，新连接由规划器入队
+            if (level.getGameTime() % SPECULATIVE_INTERVAL_TICKS == 0
+                    && GenerationThrottle.hasHeadroom()
+                    && !InitialGenManager.isActive()) {
+                RoadPlanningService.planAhead(level);
+            }
+            return;
         }
-        int limit = Math.max(1, ConfigService.get().maxConcurrentGenerations());
+        int limit = GenerationThrottle.concurrency();
         AtomicInteger cnt = RUNNING_COUNT.computeIfAbsent(level, l -> new AtomicInteger(0));
+        AtomicInteger total = RUNNING_TOTAL;
         java.util.List<ServerPlayer> players = new java.util.ArrayList<>();
         for (ServerPlayer p : level.getServer().getPlayerList().getPlayers()) {
             if (p != null && p.serverLevel() == level) players.add(p);
         }
-        int sample = Math.max(64, limit * 8);
-        while (cnt.get() < limit) {
-            Records.StructureConnection conn = pollNearest(q, players, sample);
+        q.updatePlayers(players);
+        while (total.get() < limit && GenerationThrottle.canDispatch()) {
+            Records.StructureConnection conn = q.poll();
             if (conn == null) break;
-            {
-                WorldDataProvider provider = WorldDataProvider.getInstance();
-                List<Records.StructureConnection> origin = provider.getStructureConnections(level);
-                List<Records.StructureConnection> all = origin != null ? new ArrayList<>(origin) : new ArrayList<>();
-                for (int i = 0; i < all.size(); i++) {
-                    Records.StructureConnection c = all.get(i);
-                    if (sameEdge(c, conn)) {
-                        all.set(i, new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.GENERATING));
-                    }
-                }
-                if (!all.isEmpty()) provider.setStructureConnections(level, all);
+            // 入队后可能已被同步生成或移除，以存储中的当前状态为准
+            Records.StructureConnection current = WorldDataProvider.getInstance().findConnection(level, conn.from(), conn.to());
+            if (current == null || (current.status() != Records.ConnectionStatus.PLANNED
+                    && current.status() != Records.ConnectionStatus.GENERATING)) {
+                // 暂停期间连接已被移除：丢弃保留的搜索进度
+                ConcurrentHashMap<Long, Road> paused = PAUSED.get(level);
+                if (paused != null) paused.remove(PlanningUtils.edgeKey(conn.from(), conn.to()));
+                continue;
             }
-            final Records.StructureConnection task = conn;
             cnt.incrementAndGet();
-            Future<?> fut = EXECUTOR.submit(() -> {
-                try {
-                    safeGenerate(level, task);
-                } finally {
-                    cnt.decrementAndGet();
-                }
+            total.incrementAndGet();
+            GenerationThrottle.onDispatched();
+            dispatch(level, conn, () -> {
+                cnt.decrementAndGet();
+                total.decrementAndGet();
             });
-            ALL_RUNNING.add(fut);
         }
     }
 
-    private static void refreshQueue(ServerLevel level) {
-        // 检查维度是否在允许列表中
-        if (!isDimensionAllowed(level)) {
-            return;
-        }
-        
-        WorldDataProvider provider = WorldDataProvider.getInstance();
-        List<Records.StructureConnection> list = provider.getStructureConnections(level);
-        if (list == null) return;
-        ConcurrentLinkedQueue<Records.StructureConnection> q = QUEUES.computeIfAbsent(level, l -> new ConcurrentLinkedQueue<>());
-        ConcurrentHashMap<Long, Boolean> proc = PROCESSED.computeIfAbsent(level, l -> new ConcurrentHashMap<>());
-        for (Records.StructureConnection c : list) {
-            long key = PlanningUtils.edgeKey(c.from(), c.to());
-            if (proc.putIfAbsent(key, Boolean.TRUE) != null) continue;
+    // 启动扫描：把存档中遗留的待生成连接（含日志重放恢复的）加入队列
+    private static void bootstrapQueue(ServerLevel level) {
+        enqueueAll(level, WorldDataProvider.getInstance().getStructureConnections(level));
+    }
+
+    // 仍有待生成连接的区域（两端点包围矩形覆盖的全部区域）不归档
+    private static void archiveIdleRegions(ServerLevel level, RoadShardStorage storage) {
+        LongOpenHashSet busy = new LongOpenHashSet();
+        for (Records.StructureConnection c : WorldDataProvider.getInstance().getStructureConnections(level)) {
             if (c.status() != Records.ConnectionStatus.PLANNED && c.status() != Records.ConnectionStatus.GENERATING) continue;
-            q.add(c);
+            RoadShardStorage.forEachRegion(
+                    Math.min(c.from().getX(), c.to().getX()), Math.min(c.from().getZ(), c.to().getZ()),
+                    Math.max(c.from().getX(), c.to().getX()), Math.max(c.from().getZ(), c.to().getZ()),
+                    busy::add);
         }
+        if (EXECUTOR == null || EXECUTOR.isShutdown()) return;
+        storage.archiveIdle(busy::contains, ConfigService.get(), (x, z) -> RoadPathCalculator.heightSampler(x, z, level), EXECUTOR);
     }
 
     private static void safeGenerate(ServerLevel level, Records.StructureConnection conn) {
         try {
-            WorldDataProvider provider = WorldDataProvider.getInstance();
             var reg = level.registryAccess().registryOrThrow(net.minecraft.core.registries.Registries.CONFIGURED_FEATURE);
             ConfiguredFeature<?, ?> cf = reg.get(ROAD_CF_ID);
             RoadFeatureConfig cfg;
@@ -181,82 +293,60 @@ public final class RoadGenerationService {
             } else {
                 cfg = defaultConfig();
             }
-            new Road(level, conn, cfg).generateRoad(5000);
-            List<Records.StructureConnection> all = new ArrayList<>(provider.getStructureConnections(level));
-            for (int i = 0; i < all.size(); i++) {
-                Records.StructureConnection c = all.get(i);
-                if (sameEdge(c, conn)) {
-                    all.set(i, new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.COMPLETED));
-                }
+            long key = PlanningUtils.edgeKey(conn.from(), conn.to());
+            ConcurrentHashMap<Long, Road> paused = PAUSED.get(level);
+            Road road = paused != null ? paused.remove(key) : null;
+            if (road == null) road = new Road(level, conn, cfg);
+            Road.Progress progress;
+            do {
+                progress = road.generateRoad(5000, () -> shouldYield(level, conn));
+                // 首次生成阻塞期间或暂停数已满时不保留，就地继续（第 MAX_ATTEMPTS 次超时必然结束）
+            } while ((progress == Road.Progress.YIELDED || progress == Road.Progress.TIMED_OUT) && !park(level, key, road));
+            // 服务器停止：不发布结果，日志重放时 GENERATING 回退为 PLANNED
+            if (progress == Road.Progress.CANCELLED) return;
+            if (progress == Road.Progress.YIELDED || progress == Road.Progress.TIMED_OUT) {
+                // 已保留搜索进度：保持 GENERATING 放回队列，稍后从暂停处继续
+                QUEUES.computeIfAbsent(level, l -> new GenerationScheduler()).add(conn);
+                return;
             }
-            provider.setStructureConnections(level, all);
-        } catch (Throwable t) {
-            WorldDataProvider provider = WorldDataProvider.getInstance();
-            List<Records.StructureConnection> all = new ArrayList<>(provider.getStructureConnections(level));
-            for (int i = 0; i < all.size(); i++) {
-                Records.StructureConnection c = all.get(i);
-                if (sameEdge(c, conn)) {
-                    all.set(i, new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.FAILED));
-                }
+            if (progress == Road.Progress.NO_ROAD) {
+                // 没有道路可写：单独记录，日志重放时不会当作道路丢失而重新生成
+                GenerationCommitQueue.publishNoRoad(level, conn);
+            } else {
+                // 状态迁移与道路一起交给服务器线程提交，保证道路先于 COMPLETED 落盘
+                GenerationCommitQueue.publishStatus(level, conn, Records.ConnectionStatus.COMPLETED);
             }
-            provider.setStructureConnections(level, all);
+            recordCompletion();
+        } catch (Throwable t) {
+            if (Thread.currentThread().isInterrupted()) return;
+            GenerationCommitQueue.publishStatus(level, conn, Records.ConnectionStatus.FAILED);
         }
     }
 
-    private static RoadFeatureConfig defaultConfig() {
-        return new RoadFeatureConfig();
-    }
-
-    private static boolean sameEdge(Records.StructureConnection a, Records.StructureConnection b) {
-        BlockPos af = a.from(), at = a.to();
-        BlockPos bf = b.from(), bt = b.to();
-        return (af.equals(bf) && at.equals(bt)) || (af.equals(bt) && at.equals(bf));
-    }
-
-    private static long dist2XZ(BlockPos a, BlockPos b) {
-        long dx = (long) a.getX() - b.getX();
-        long dz = (long) a.getZ() - b.getZ();
-        return dx * dx + dz * dz;
+    // 保留让路或超时的搜索进度；首次生成期间（阻塞等待全部完成）与达到 MAX_PAUSED 时拒绝
+    private static boolean park(ServerLevel level, long key, Road road) {
+        if (InitialGenManager.isActive()) return false;
+        ConcurrentHashMap<Long, Road> paused = PAUSED.computeIfAbsent(level, l -> new ConcurrentHashMap<>());
+        synchronized (paused) {
+            if (paused.size() >= MAX_PAUSED) return false;
+            road.releaseSamples();
+            paused.put(key, road);
+        }
+        return true;
     }
 
-    private static long playerDistance2(Records.StructureConnection c, java.util.List<ServerPlayer> players) {
-        if (players == null || players.isEmpty()) return Long.MAX_VALUE;
-        long best = Long.MAX_VALUE;
-        int mx = (c.from().getX() + c.to().getX()) >> 1;
-        int mz = (c.from().getZ() + c.to().getZ()) >> 1;
-        BlockPos mid = new BlockPos(mx, 0, mz);
-        for (ServerPlayer p : players) {
-            BlockPos pb = p.blockPosition();
-            long d = dist2XZ(pb, c.from());
-            if (d < best) best = d;
-            d = dist2XZ(pb, c.to());
-            if (d < best) best = d;
-            d = dist2XZ(pb, mid);
-            if (d < best) best = d;
-        }
-        return best;
+    // 并发已满且队列中有更靠近玩家的连接时，让当前搜索暂停；首次生成阻塞期间不让路
+    private static boolean shouldYield(ServerLevel level, Records.StructureConnection conn) {
+        if (InitialGenManager.isActive() || Thread.currentThread().isInterrupted()) return false;
+        ConcurrentHashMap<Long, Road> paused = PAUSED.get(level);
+        if (paused != null && paused.size() >= MAX_PAUSED) return false;
+        if (runningTotal() < GenerationThrottle.concurrency()) return false;
+        GenerationScheduler q = QUEUES.get(level);
+        return q != null && q.hasNearerThan(conn);
     }
 
-    private static Records.StructureConnection pollNearest(ConcurrentLinkedQueue<Records.StructureConnection> q,
-                                                           java.util.List<ServerPlayer> players,
-                                                           int sample) {
-        if (q.isEmpty()) return null;
-        if (players == null || players.isEmpty()) return q.poll();
-        java.util.Iterator<Records.StructureConnection> it = q.iterator();
-        Records.StructureConnection best = null;
-        long bestd = Long.MAX_VALUE;
-        int c = 0;
-        while (it.hasNext() && c < Math.max(1, sample)) {
-            Records.StructureConnection e = it.next();
-            long d = playerDistance2(e, players);
-            if (d < bestd) {
-                bestd = d;
-                best = e;
-            }
-            c++;
-        }
-        if (best != null && q.remove(best)) return best;
-        return q.poll();
+    private static RoadFeatureConfig defaultConfig() {
+        return new RoadFeatureConfig();
     }
 
     private static boolean isDimensionAllowed(ServerLevel level) {
@@ -7,6 +7,7 @@ import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -92,13 +93,70 @@ public final class Records {
         }
     }
 
-    public record RoadSegmentPlacement(BlockPos middlePos, List<BlockPos> positions) {
+    /**
+     * 道路段：只保存中心点、方向编码、半径与存在位图，宽度方块按需展开（见 WidthTemplate）。
+     * direction 为 WidthTemplate.EXPLICIT 时 mask 直接保存各方块的 BlockPos.asLong。
+     */
+    public record RoadSegmentPlacement(BlockPos middlePos, byte direction, byte radius, long[] mask) {
+        // 仍按旧格式（显式坐标列表）读写，供旧存档迁移使用
         public static final Codec<RoadSegmentPlacement> CODEC = RecordCodecBuilder.create(instance ->
                 instance.group(
                         BlockPos.CODEC.fieldOf("middle_pos").forGetter(RoadSegmentPlacement::middlePos),
                         BlockPos.CODEC.listOf().fieldOf("positions").forGetter(RoadSegmentPlacement::positions)
-                ).apply(instance, RoadSegmentPlacement::new)
+                ).apply(instance, WidthTemplate::compact)
         );
+
+        public interface PositionVisitor {
+            void accept(int x, int y, int z);
+        }
+
+        /**
+         * 按模板顺序逐个访问宽度方块，不分配中间集合。
+         */
+        public void forEachPosition(PositionVisitor visitor) {
+            if (direction == WidthTemplate.EXPLICIT) {
+                for (long packed : mask) {
+                    visitor.accept(BlockPos.getX(packed), BlockPos.getY(packed), BlockPos.getZ(packed));
+                }
+                return;
+            }
+            int[] offsets = WidthTemplate.offsets(direction, radius);
+            int cx = middlePos.getX();
+            int cz = middlePos.getZ();
+            for (int i = 0; i < offsets.length / 2; i++) {
+                if (WidthTemplate.isSet(mask, i)) visitor.accept(cx + offsets[i * 2], 0, cz + offsets[i * 2 + 1]);
+            }
+        }
+
+        /**
+         * 展开为宽度方块列表（每次调用新建）。
+         */
+        public List<BlockPos> positions() {
+            List<BlockPos> out = new ArrayList<>();
+            forEachPosition((x, y, z) -> out.add(new BlockPos(x, y, z)));
+            return out;
+        }
+
+        // 记录默认按数组引用比较 mask，这里改为按内容，保持段的值语义
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof RoadSegmentPlacement other
+                    && direction == other.direction
+                    && radius == other.radius
+                    && middlePos.equals(other.middlePos)
+                    && Arrays.equals(mask, other.mask);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * (31 * middlePos.hashCode() + direction) + radius) + Arrays.hashCode(mask);
+        }
+
+        @Override
+        public String toString() {
+            return "RoadSegmentPlacement[middlePos=" + middlePos + ", direction=" + direction
+                    + ", radius=" + radius + ", mask=" + Arrays.toString(mask) + "]";
+        }
     }
 
     public enum SpanType {
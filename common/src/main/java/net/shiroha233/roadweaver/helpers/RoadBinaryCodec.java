@@ -0,0 +1,226 @@
+package net.shiroha233.roadweaver.helpers;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 道路数据的紧凑二进制编码（Common）。
+ * 中心点使用差分 + zigzag 变长整数；宽度方块直接写道路段的「方向/半径 + 存在位图」（见 WidthTemplate），
+ * 显式坐标段退回逐点差分；材质使用整批共享的调色板索引。
+ * 持久化分片与地图快照网络包共用本编码。
+ */
+public final class RoadBinaryCodec {
+    private RoadBinaryCodec() {}
+
+    public static final int VERSION = 1;
+
+    public static byte[] encode(List<Records.RoadData> roads) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            writeRoads(buf, roads);
+            byte[] out = new byte[buf.readableBytes()];
+            buf.readBytes(out);
+            return out;
+        } finally {
+            buf.release();
+        }
+    }
+
+    public static List<Records.RoadData> decode(byte[] bytes) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(bytes));
+        try {
+            return readRoads(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    public static void writeRoads(FriendlyByteBuf buf, List<Records.RoadData> roads) {
+        buf.writeVarInt(VERSION);
+
+        // 材质调色板
+        List<BlockState> palette = new ArrayList<>();
+        Map<BlockState, Integer> paletteIndex = new HashMap<>();
+        for (Records.RoadData road : roads) {
+            for (BlockState state : road.materials()) {
+                paletteIndex.computeIfAbsent(state, s -> {
+                    palette.add(s);
+                    return palette.size() - 1;
+                });
+            }
+        }
+        buf.writeVarInt(palette.size());
+        for (BlockState state : palette) buf.writeNbt(NbtUtils.writeBlockState(state));
+
+        buf.writeVarInt(roads.size());
+        for (Records.RoadData road : roads) {
+            buf.writeVarInt(road.width());
+            writeZigZag(buf, road.roadType());
+            buf.writeVarInt(road.materials().size());
+            for (BlockState state : road.materials()) buf.writeVarInt(paletteIndex.get(state));
+            writeSegments(buf, road.roadSegmentList());
+            List<Records.RoadSpan> spans = road.spans() != null ? road.spans() : List.of();
+            buf.writeVarInt(spans.size());
+            for (Records.RoadSpan span : spans) {
+                writePos(buf, span.start());
+                writePos(buf, span.end());
+                buf.writeVarInt(span.type().ordinal());
+            }
+        }
+    }
+
+    public static List<Records.RoadData> readRoads(FriendlyByteBuf buf) {
+        int version = buf.readVarInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported road data version: " + version);
+        }
+
+        int paletteSize = buf.readVarInt();
+        List<BlockState> palette = new ArrayList<>(paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            CompoundTag tag = buf.readNbt();
+            palette.add(NbtUtils.readBlockState(BuiltInRegistries.BLOCK.asLookup(), tag != null ? tag : new CompoundTag()));
+        }
+
+        int count = buf.readVarInt();
+        List<Records.RoadData> roads = new ArrayList<>(count);
+        for (int r = 0; r < count; r++) {
+            int width = buf.readVarInt();
+            int roadType = readZigZag(buf);
+            int materialCount = buf.readVarInt();
+            List<BlockState> materials = new ArrayList<>(materialCount);
+            for (int i = 0; i < materialCount; i++) materials.add(palette.get(buf.readVarInt()));
+            List<Records.RoadSegmentPlacement> segments = readSegments(buf);
+            int spanCount = buf.readVarInt();
+            List<Records.RoadSpan> spans = new ArrayList<>(spanCount);
+            for (int i = 0; i < spanCount; i++) {
+                BlockPos start = readPos(buf);
+                BlockPos end = readPos(buf);
+                spans.add(new Records.RoadSpan(start, end, Records.SpanType.values()[buf.readVarInt()]));
+            }
+            roads.add(new Records.RoadData(width, roadType, materials, segments, spans));
+        }
+        return roads;
+    }
+
+    /**
+     * 折线：首点绝对坐标，之后逐点差分。
+     */
+    public static void writePolyline(FriendlyByteBuf buf, List<BlockPos> points) {
+        buf.writeVarInt(points.size());
+        int px = 0, py = 0, pz = 0;
+        for (BlockPos p : points) {
+            writeZigZag(buf, p.getX() - px);
+            writeZigZag(buf, p.getY() - py);
+            writeZigZag(buf, p.getZ() - pz);
+            px = p.getX();
+            py = p.getY();
+            pz = p.getZ();
+        }
+    }
+
+    public static List<BlockPos> readPolyline(FriendlyByteBuf buf) {
+        int n = buf.readVarInt();
+        List<BlockPos> out = new ArrayList<>(n);
+        int x = 0, y = 0, z = 0;
+        for (int i = 0; i < n; i++) {
+            x += readZigZag(buf);
+            y += readZigZag(buf);
+            z += readZigZag(buf);
+            out.add(new BlockPos(x, y, z));
+        }
+        return out;
+    }
+
+    private static void writeSegments(FriendlyByteBuf buf, List<Records.RoadSegmentPlacement> segments) {
+        buf.writeVarInt(segments.size());
+        int px = 0, py = 0, pz = 0;
+        for (Records.RoadSegmentPlacement seg : segments) {
+            BlockPos m = seg.middlePos();
+            writeZigZag(buf, m.getX() - px);
+            writeZigZag(buf, m.getY() - py);
+            writeZigZag(buf, m.getZ() - pz);
+            px = m.getX();
+            py = m.getY();
+            pz = m.getZ();
+            writeWidth(buf, seg);
+        }
+    }
+
+    private static List<Records.RoadSegmentPlacement> readSegments(FriendlyByteBuf buf) {
+        int n = buf.readVarInt();
+        List<Records.RoadSegmentPlacement> out = new ArrayList<>(n);
+        int x = 0, y = 0, z = 0;
+        for (int i = 0; i < n; i++) {
+            x += readZigZag(buf);
+            y += readZigZag(buf);
+            z += readZigZag(buf);
+            BlockPos middle = new BlockPos(x, y, z);
+            out.add(readWidth(buf, middle));
+        }
+        return out;
+    }
+
+    // 宽度方块：模板段只写方向、半径与存在位图，显式段写相对中心点的差分
+    private static void writeWidth(FriendlyByteBuf buf, Records.RoadSegmentPlacement seg) {
+        buf.writeVarInt(seg.direction());
+        if (seg.direction() != WidthTemplate.EXPLICIT) {
+            buf.writeVarInt(seg.radius());
+            buf.writeLongArray(seg.mask());
+            return;
+        }
+        BlockPos middle = seg.middlePos();
+        buf.writeVarInt(seg.mask().length);
+        for (long packed : seg.mask()) {
+            writeZigZag(buf, BlockPos.getX(packed) - middle.getX());
+            writeZigZag(buf, BlockPos.getY(packed) - middle.getY());
+            writeZigZag(buf, BlockPos.getZ(packed) - middle.getZ());
+        }
+    }
+
+    private static Records.RoadSegmentPlacement readWidth(FriendlyByteBuf buf, BlockPos middle) {
+        int dir = buf.readVarInt();
+        if (dir != WidthTemplate.EXPLICIT) {
+            int radius = buf.readVarInt();
+            return new Records.RoadSegmentPlacement(middle, (byte) dir, (byte) radius, buf.readLongArray());
+        }
+        int n = buf.readVarInt();
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            int dx = readZigZag(buf);
+            int dy = readZigZag(buf);
+            int dz = readZigZag(buf);
+            packed[i] = BlockPos.asLong(middle.getX() + dx, middle.getY() + dy, middle.getZ() + dz);
+        }
+        return new Records.RoadSegmentPlacement(middle, WidthTemplate.EXPLICIT, (byte) 0, packed);
+    }
+
+    private static void writePos(FriendlyByteBuf buf, BlockPos p) {
+        writeZigZag(buf, p.getX());
+        writeZigZag(buf, p.getY());
+        writeZigZag(buf, p.getZ());
+    }
+
+    private static BlockPos readPos(FriendlyByteBuf buf) {
+        return new BlockPos(readZigZag(buf), readZigZag(buf), readZigZag(buf));
+    }
+
+    private static void writeZigZag(FriendlyByteBuf buf, int v) {
+        buf.writeVarInt((v << 1) ^ (v >> 31));
+    }
+
+    private static int readZigZag(FriendlyByteBuf buf) {
+        int v = buf.readVarInt();
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -2,6 +2,7 @@ package net.shiroha233.roadweaver.helpers;
 
 import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
+import net.shiroha233.roadweaver.generation.RoadGenerationService;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 
 import java.util.*;
@@ -36,6 +37,7 @@ public final class StructureConnector {
             Records.StructureConnection c = new Records.StructureConnection(latest, closest, Records.ConnectionStatus.PLANNED);
             connections.add(c);
             provider.setStructureConnections(level, connections);
+            RoadGenerationService.enqueue(level, c);
             CACHED.add(c);
         }
     }
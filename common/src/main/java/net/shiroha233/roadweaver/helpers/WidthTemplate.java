@@ -0,0 +1,130 @@
+package net.shiroha233.roadweaver.helpers;
+
+import net.minecraft.core.BlockPos;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 道路宽度模板（Common）。
+ * 宽度方块完全由中心点、方向与半径决定，枚举顺序与 RoadPathCalculator.generateWidth 一致；
+ * 道路段只需保存方向、半径与一个存在位图（跨段去重后剩余的方块）。
+ */
+public final class WidthTemplate {
+    private WidthTemplate() {}
+
+    // 方向编码：0 为显式坐标（无法套用模板的旧数据），1..4 对应 RoadDirection 的顺序
+    public static final byte EXPLICIT = 0;
+    public static final byte X_AXIS = 1;
+    public static final byte Z_AXIS = 2;
+    public static final byte DIAGONAL_1 = 3;
+    public static final byte DIAGONAL_2 = 4;
+    public static final int MAX_RADIUS = 15;
+
+    private static final int[][][] OFFSETS = new int[DIAGONAL_2 + 1][MAX_RADIUS + 1][];
+
+    static {
+        for (int dir = X_AXIS; dir <= DIAGONAL_2; dir++) {
+            for (int r = 0; r <= MAX_RADIUS; r++) {
+                OFFSETS[dir][r] = buildOffsets(dir, r);
+            }
+        }
+    }
+
+    /**
+     * 返回模板偏移（dx,dz 二元组，只读）。
+     */
+    public static int[] offsets(int dir, int radius) {
+        return OFFSETS[dir][radius];
+    }
+
+    public static int size(int dir, int radius) {
+        return OFFSETS[dir][radius].length / 2;
+    }
+
+    public static long[] newMask(int dir, int radius) {
+        return new long[(size(dir, radius) + 63) >>> 6];
+    }
+
+    public static boolean isSet(long[] mask, int i) {
+        return (mask[i >>> 6] & (1L << (i & 63))) != 0;
+    }
+
+    public static void set(long[] mask, int i) {
+        mask[i >>> 6] |= 1L << (i & 63);
+    }
+
+    /**
+     * 将显式宽度方块压缩为模板段；方块 y 不为 0、超出模板或重复时退回显式坐标。
+     */
+    public static Records.RoadSegmentPlacement compact(BlockPos middle, List<BlockPos> positions) {
+        int radius = templateRadius(middle, positions);
+        if (radius >= 0) {
+            for (int dir = X_AXIS; dir <= DIAGONAL_2; dir++) {
+                long[] mask = match(middle, positions, dir, radius);
+                if (mask != null) return new Records.RoadSegmentPlacement(middle, (byte) dir, (byte) radius, mask);
+            }
+        }
+        long[] packed = new long[positions.size()];
+        for (int i = 0; i < packed.length; i++) packed[i] = positions.get(i).asLong();
+        return new Records.RoadSegmentPlacement(middle, EXPLICIT, (byte) 0, packed);
+    }
+
+    private static int templateRadius(BlockPos middle, List<BlockPos> positions) {
+        if (positions.isEmpty()) return 0;
+        int radius = 0;
+        for (BlockPos p : positions) {
+            if (p.getY() != 0) return -1;
+            radius = Math.max(radius, Math.max(Math.abs(p.getX() - middle.getX()), Math.abs(p.getZ() - middle.getZ())));
+        }
+        return radius <= MAX_RADIUS ? radius : -1;
+    }
+
+    private static long[] match(BlockPos middle, List<BlockPos> positions, int dir, int radius) {
+        int[] offsets = offsets(dir, radius);
+        int side = 2 * radius + 1;
+        int[] slot = new int[side * side];
+        Arrays.fill(slot, -1);
+        for (int i = 0; i < offsets.length / 2; i++) {
+            slot[(offsets[i * 2] + radius) * side + (offsets[i * 2 + 1] + radius)] = i;
+        }
+        long[] mask = newMask(dir, radius);
+        for (BlockPos p : positions) {
+            int s = slot[(p.getX() - middle.getX() + radius) * side + (p.getZ() - middle.getZ() + radius)];
+            if (s < 0 || isSet(mask, s)) return null;
+            set(mask, s);
+        }
+        return mask;
+    }
+
+    private static int[] buildOffsets(int dir, int radius) {
+        int side = 2 * radius + 1;
+        int[] out = new int[side * side * 2];
+        int n = 0;
+        if (dir == X_AXIS) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                out[n++] = 0;
+                out[n++] = dz;
+            }
+        } else if (dir == Z_AXIS) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                out[n++] = dx;
+                out[n++] = 0;
+            }
+        } else {
+            for (int dx = -radius; dx <= radius; dx++) {
+                for (int dz = -radius; dz <= radius; dz++) {
+                    if (dir == DIAGONAL_2) {
+                        if ((dx == -radius && dz == -radius) || (dx == radius && dz == radius)) continue;
+                    }
+                    if (dir == DIAGONAL_1) {
+                        if ((dx == -radius && dz == radius) || (dx == radius && dz == -radius)) continue;
+                    }
+                    out[n++] = dx;
+                    out[n++] = dz;
+                }
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
@@ -4,6 +4,7 @@ import net.minecraft.core.BlockPos;
 import net.minecraft.network.FriendlyByteBuf;
 import net.shiroha233.roadweaver.client.map.MapSnapshot;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.helpers.RoadBinaryCodec;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -30,10 +31,7 @@ public final class MapSnapshotCodec {
         }
         List<java.util.List<BlockPos>> roads = s.roadPolylines();
         buf.writeVarInt(roads.size());
-        for (java.util.List<BlockPos> pl : roads) {
-            buf.writeVarInt(pl.size());
-            for (BlockPos p : pl) buf.writeBlockPos(p);
-        }
+        for (java.util.List<BlockPos> pl : roads) RoadBinaryCodec.writePolyline(buf, pl);
     }
 
     public static MapSnapshot read(FriendlyByteBuf buf) {
@@ -59,12 +57,7 @@ public final class MapSnapshotCodec {
         }
         int rp = buf.readVarInt();
         java.util.List<java.util.List<BlockPos>> roads = new ArrayList<>(rp);
-        for (int i = 0; i < rp; i++) {
-            int pc = buf.readVarInt();
-            java.util.List<BlockPos> poly = new ArrayList<>(pc);
-            for (int j = 0; j < pc; j++) poly.add(buf.readBlockPos());
-            roads.add(poly);
-        }
+        for (int i = 0; i < rp; i++) roads.add(RoadBinaryCodec.readPolyline(buf));
         return new MapSnapshot(structures, conns, infos, roads);
     }
 }
@@ -0,0 +1,113 @@
+package net.shiroha233.roadweaver.persistence;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 后台 SavedData 写入器（Common）。
+ * 主线程只提交不可变快照，编码与文件 IO 在单独的写线程上完成；
+ * 先写临时文件再原子替换，文件格式与 SavedData.save(File) 相同。
+ * 同一文件尚未写出的旧快照会被新快照覆盖。
+ */
+public final class AsyncDataWriter {
+    private AsyncDataWriter() {}
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("roadweaver");
+
+    private static final Map<Path, Job> PENDING = new ConcurrentHashMap<>();
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "RoadWeaver-Save");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // onWritten 为写入成功后的回调；被新快照覆盖的旧任务的回调会合并到新任务上
+    // onFailed 在写入失败时收到未执行的回调，由提交方重新标记为未保存并在下次保存时带上
+    private record Job(Supplier<CompoundTag> encoder, List<Runnable> onWritten, Consumer<List<Runnable>> onFailed) {}
+
+    /**
+     * 提交一次写入；encoder 在写线程上调用，只能访问提交时捕获的快照。
+     */
+    public static void submit(File file, Supplier<CompoundTag> encoder, List<Runnable> onWritten, Consumer<List<Runnable>> onFailed) {
+        Path path = file.toPath();
+        boolean[] schedule = new boolean[1];
+        // 合并与写线程的取出都在同一个键上原子完成，旧任务的回调不会丢失
+        PENDING.compute(path, (p, prev) -> {
+            if (prev == null) {
+                schedule[0] = true;
+                return new Job(encoder, onWritten, onFailed);
+            }
+            // 旧快照尚未写出，由已排队的任务写最新快照，并带上旧回调
+            List<Runnable> merged = new ArrayList<>(prev.onWritten());
+            merged.addAll(onWritten);
+            return new Job(encoder, merged, onFailed);
+        });
+        if (!schedule[0]) return;
+        WRITER.execute(() -> {
+            Job latest = PENDING.remove(path);
+            if (latest == null) return;
+            if (write(path, latest.encoder())) {
+                latest.onWritten().forEach(Runnable::run);
+            } else {
+                latest.onFailed().accept(latest.onWritten());
+            }
+        });
+    }
+
+    /**
+     * 在此前提交的写入全部完成后于写线程上执行 task。
+     */
+    public static void afterPendingWrites(Runnable task) {
+        WRITER.execute(task);
+    }
+
+    /**
+     * 阻塞等待此前提交的写入全部完成（服务器停止时调用）。
+     */
+    public static void awaitIdle() {
+        try {
+            WRITER.submit(() -> {}).get(60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            LOGGER.warn("RoadWeaver: waiting for pending saves failed", e);
+        }
+    }
+
+    private static boolean write(Path path, Supplier<CompoundTag> encoder) {
+        try {
+            CompoundTag root = new CompoundTag();
+            root.put("data", encoder.get());
+            NbtUtils.addCurrentDataVersion(root);
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            Files.createDirectories(path.getParent());
+            NbtIo.writeCompressed(root, tmp.toFile());
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("RoadWeaver: could not save {}", path, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package net.shiroha233.roadweaver.persistence;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+import net.shiroha233.roadweaver.helpers.Records;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 结构连接状态日志（Common）。
+ * 两次自动保存之间的状态迁移与「道路已写入分片」事件以定长记录顺序追加到日志文件，
+ * 每 tick 批量写出并 fsync 一次；世界保存时轮换日志，主存储写完后删除旧日志。
+ * 加载时重放：GENERATING 与尚未写入分片的 COMPLETED 回退为 PLANNED（没有道路的 COMPLETED 另有记录，不回退），
+ * 其余恢复为日志中的最终状态。
+ */
+public final class ConnectionJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("roadweaver");
+
+    private static final String FILE_NAME = "roadweaver_journal.log";
+    private static final String OLD_SUFFIX = ".old";
+
+    private static final byte TYPE_STATUS = 1;
+    private static final byte TYPE_ROAD_PERSISTED = 2;
+    // 生成结束但没有道路：COMPLETED 不需要等待分片落盘
+    private static final byte TYPE_NO_ROAD = 3;
+    // 类型(1) + from(8) + to(8) + 状态(1)
+    private static final int RECORD_SIZE = 18;
+
+    private static final Map<ServerLevel, ConnectionJournal> JOURNALS = new ConcurrentHashMap<>();
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "RoadWeaver-Journal");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path file;
+    private final Path oldFile;
+    private ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 64);
+    private FileChannel channel;
+
+    private ConnectionJournal(Path file) {
+        this.file = file;
+        this.oldFile = file.resolveSibling(file.getFileName() + OLD_SUFFIX);
+    }
+
+    /**
+     * 获取维度对应的日志；首次访问时重放磁盘上的日志并恢复连接状态。
+     */
+    public static ConnectionJournal get(ServerLevel level) {
+        ConnectionJournal journal = JOURNALS.get(level);
+        if (journal != null) return journal;
+        synchronized (JOURNALS) {
+            journal = JOURNALS.get(level);
+            if (journal == null) {
+                Path dir = DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT)).resolve("data");
+                journal = new ConnectionJournal(dir.resolve(FILE_NAME));
+                journal.replay(level);
+                JOURNALS.put(level, journal);
+            }
+        }
+        return journal;
+    }
+
+    public synchronized void status(Records.StructureConnection conn, Records.ConnectionStatus status) {
+        append(TYPE_STATUS, conn.from(), conn.to(), (byte) status.ordinal());
+    }
+
+    public synchronized void roadPersisted(Records.StructureConnection conn) {
+        append(TYPE_ROAD_PERSISTED, conn.from(), conn.to(), (byte) 0);
+    }
+
+    public synchronized void noRoad(Records.StructureConnection conn) {
+        append(TYPE_NO_ROAD, conn.from(), conn.to(), (byte) 0);
+    }
+
+    /**
+     * 将本 tick 累积的记录交给日志线程写出，并只 fsync 一次。
+     */
+    public void sync() {
+        ByteBuffer batch;
+        synchronized (this) {
+            if (buffer.position() == 0) return;
+            batch = buffer.flip();
+            buffer = ByteBuffer.allocate(Math.max(RECORD_SIZE * 64, batch.capacity()));
+        }
+        IO.execute(() -> write(batch));
+    }
+
+    /**
+     * 世界保存开始：轮换日志，之后的记录写入新文件。
+     * 上一次轮换的旧日志尚未删除时不再轮换，保守地保留全部记录。
+     */
+    public void beginCheckpoint() {
+        sync();
+        IO.execute(() -> {
+            try {
+                closeChannel();
+                if (Files.exists(file) && !Files.exists(oldFile)) {
+                    Files.move(file, oldFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("RoadWeaver: could not rotate {}", file, e);
+            }
+        });
+    }
+
+    /**
+     * 世界保存结束：等主存储的后台写入完成后删除旧日志。
+     */
+    public void endCheckpoint() {
+        AsyncDataWriter.afterPendingWrites(() -> IO.execute(() -> {
+            try {
+                Files.deleteIfExists(oldFile);
+            } catch (IOException e) {
+                LOGGER.warn("RoadWeaver: could not delete {}", oldFile, e);
+            }
+        }));
+    }
+
+    /**
+     * 世界保存入口：只处理已打开日志的维度，不会因保存而触发重放。
+     */
+    public static void checkpointBegin(ServerLevel level) {
+        ConnectionJournal journal = JOURNALS.get(level);
+        if (journal != null) journal.beginCheckpoint();
+    }
+
+    public static void checkpointEnd(ServerLevel level) {
+        ConnectionJournal journal = JOURNALS.get(level);
+        if (journal != null) journal.endCheckpoint();
+    }
+
+    /**
+     * 服务器停止后关闭全部日志（最后一次保存已经完成检查点）。
+     */
+    public static void closeAll() {
+        JOURNALS.values().forEach(j -> {
+            j.sync();
+            IO.execute(j::closeChannel);
+        });
+        JOURNALS.clear();
+        try {
+            IO.submit(() -> {}).get();
+        } catch (Exception e) {
+            LOGGER.warn("RoadWeaver: waiting for journal failed", e);
+        }
+    }
+
+    private void append(byte type, BlockPos from, BlockPos to, byte status) {
+        if (buffer.remaining() < RECORD_SIZE) {
+            ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+            grown.put(buffer.flip());
+            buffer = grown;
+        }
+        buffer.put(type).putLong(from.asLong()).putLong(to.asLong()).put(status);
+    }
+
+    // 只在日志线程上调用
+    private void write(ByteBuffer batch) {
+        try {
+            if (channel == null) {
+                Files.createDirectories(file.getParent());
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            while (batch.hasRemaining()) channel.write(batch);
+            channel.force(false);
+        } catch (IOException e) {
+            LOGGER.error("RoadWeaver: could not append to {}", file, e);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    private void replay(ServerLevel level) {
+        Map<EdgeId, Entry> edges = new LinkedHashMap<>();
+        int records = read(oldFile, edges) + read(file, edges);
+        if (records == 0) return;
+
+        WorldDataProvider provider = WorldDataProvider.getInstance();
+        ConnectionStore store = provider.getConnectionStore(level);
+        int restored = 0;
+        for (Entry e : edges.values()) {
+            if (e.status == null) continue;
+            Records.ConnectionStatus target = e.status;
+            // 生成中断，或道路尚未写入分片：需要重新生成
+            if (target == Records.ConnectionStatus.GENERATING
+                    || (target == Records.ConnectionStatus.COMPLETED && !e.persisted)) {
+                target = Records.ConnectionStatus.PLANNED;
+            }
+            restored += store.setStatus(e.from, e.to, target);
+        }
+        if (restored > 0) provider.markConnectionsDirty(level);
+        LOGGER.info("RoadWeaver: replayed {} journal records, restored {} connection states", records, restored);
+    }
+
+    private static int read(Path path, Map<EdgeId, Entry> edges) {
+        if (!Files.exists(path)) return 0;
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            LOGGER.warn("RoadWeaver: could not read {}", path, e);
+            return 0;
+        }
+        // 末尾不完整的记录（崩溃时写到一半）直接丢弃
+        ByteBuffer in = ByteBuffer.wrap(bytes, 0, bytes.length - bytes.length % RECORD_SIZE);
+        int n = 0;
+        while (in.remaining() >= RECORD_SIZE) {
+            byte type = in.get();
+            BlockPos from = BlockPos.of(in.getLong());
+            BlockPos to = BlockPos.of(in.getLong());
+            byte status = in.get();
+            Entry e = edges.computeIfAbsent(EdgeId.of(from, to), k -> new Entry(from, to));
+            if (type == TYPE_STATUS && status >= 0 && status < Records.ConnectionStatus.values().length) {
+                e.status = Records.ConnectionStatus.values()[status];
+                // 新的状态迁移之后，之前的写入记录不再代表当前这次生成
+                if (e.status != Records.ConnectionStatus.COMPLETED) e.persisted = false;
+            } else if (type == TYPE_ROAD_PERSISTED || type == TYPE_NO_ROAD) {
+                e.persisted = true;
+            }
+            n++;
+        }
+        return n;
+    }
+
+    // 与方向无关的边标识（精确比较两个端点，不依赖 edgeKey 哈希）
+    private record EdgeId(long lo, long hi) {
+        static EdgeId of(BlockPos a, BlockPos b) {
+            long ka = a.asLong();
+            long kb = b.asLong();
+            return new EdgeId(Math.min(ka, kb), Math.max(ka, kb));
+        }
+    }
+
+    private static final class Entry {
+        final BlockPos from;
+        final BlockPos to;
+        Records.ConnectionStatus status;
+        boolean persisted;
+
+        Entry(BlockPos from, BlockPos to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package net.shiroha233.roadweaver.persistence;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.planning.PlanningUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 结构连接存储（Common）。
+ * 按 PlanningUtils.edgeKey 建立索引并维护各状态计数，状态迁移原地完成，
+ * 不再需要复制整个列表、线性查找后整体写回。
+ * edgeKey 是哈希值，同键的连接以链表串起并用端点再次比对。
+ */
+public final class ConnectionStore {
+    private final List<Records.StructureConnection> list = new ArrayList<>();
+    private final List<Records.StructureConnection> view = Collections.unmodifiableList(list);
+    // edgeKey -> 链表头下标；next[i] 为同键的下一个下标
+    private final Long2IntOpenHashMap head = new Long2IntOpenHashMap();
+    private final IntArrayList next = new IntArrayList();
+    private final int[] counts = new int[Records.ConnectionStatus.values().length];
+
+    public ConnectionStore() {
+        head.defaultReturnValue(-1);
+    }
+
+    public ConnectionStore(List<Records.StructureConnection> connections) {
+        this();
+        replaceAll(connections);
+    }
+
+    /**
+     * 只读视图；状态迁移会原地替换元素，但不会改变列表结构。
+     */
+    public List<Records.StructureConnection> view() {
+        return view;
+    }
+
+    public synchronized int size() {
+        return list.size();
+    }
+
+    public synchronized void replaceAll(List<Records.StructureConnection> connections) {
+        // 传入的可能正是本存储的视图，先复制再清空
+        List<Records.StructureConnection> src = connections != null ? new ArrayList<>(connections) : List.of();
+        list.clear();
+        head.clear();
+        next.clear();
+        Arrays.fill(counts, 0);
+        for (Records.StructureConnection c : src) add(c);
+    }
+
+    public synchronized void add(Records.StructureConnection c) {
+        if (c == null) return;
+        int index = list.size();
+        long key = PlanningUtils.edgeKey(c.from(), c.to());
+        list.add(c);
+        next.add(head.get(key));
+        head.put(key, index);
+        counts[c.status().ordinal()]++;
+    }
+
+    /**
+     * 将端点相同（不分方向）的所有连接改为指定状态，返回实际变化的条数。
+     */
+    public synchronized int setStatus(BlockPos a, BlockPos b, Records.ConnectionStatus status) {
+        int changed = 0;
+        for (int i = head.get(PlanningUtils.edgeKey(a, b)); i >= 0; i = next.getInt(i)) {
+            Records.StructureConnection c = list.get(i);
+            if (!sameEdge(c, a, b) || c.status() == status) continue;
+            counts[c.status().ordinal()]--;
+            counts[status.ordinal()]++;
+            list.set(i, new Records.StructureConnection(c.from(), c.to(), status));
+            changed++;
+        }
+        return changed;
+    }
+
+    public synchronized Records.StructureConnection find(BlockPos a, BlockPos b) {
+        for (int i = head.get(PlanningUtils.edgeKey(a, b)); i >= 0; i = next.getInt(i)) {
+            Records.StructureConnection c = list.get(i);
+            if (sameEdge(c, a, b)) return c;
+        }
+        return null;
+    }
+
+    public synchronized int count(Records.ConnectionStatus status) {
+        return counts[status.ordinal()];
+    }
+
+    /**
+     * 各状态计数的快照，下标为 ConnectionStatus.ordinal()。
+     */
+    public synchronized int[] counts() {
+        return counts.clone();
+    }
+
+    private static boolean sameEdge(Records.StructureConnection c, BlockPos a, BlockPos b) {
+        return (c.from().equals(a) && c.to().equals(b)) || (c.from().equals(b) && c.to().equals(a));
+    }
+}
@@ -0,0 +1,462 @@
+package net.shiroha233.roadweaver.persistence;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.shiroha233.roadweaver.config.ModConfig;
+import net.shiroha233.roadweaver.features.placement.RoadPlacementPlan;
+import net.shiroha233.roadweaver.helpers.Records;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * 已完成区域的只读道路归档（Common）。
+ * 区域内的连接全部结束后，分片中的道路按区块展开为放置计划写入一个不可变文件，
+ * 之后只读访问：按区块键二分查找偏移表，只读取被查询区块的数据，这些道路不再以对象形式常驻堆内存。
+ * 较小的归档整体读入字节数组，较大的以只读内存映射打开；映射在 close 时释放，
+ * 删除或替换文件前必须先关闭（Windows 上映射存活时无法删除文件）。
+ *
+ * 文件布局（大端）：
+ * 头部      MAGIC, VERSION, 区块数, 道路数, 材质表偏移
+ * 区块表    区块数 x (chunkKey, 偏移, 长度)，按 chunkKey 升序
+ * 道路表    道路数 x (roadType, roadWidth, 材质组, 中心点偏移, 中心点数)
+ * 区块数据  片段数；每个片段：道路下标, 段数, 装饰位数,
+ *           段 x (segmentIndex, x, y, z, targetY, centerY, 列数, 列 x,z...),
+ *           装饰位 x (段, prev x,y,z, next x,y,z)
+ * 中心点    x, y, z
+ * 材质表    组数，每组为方块状态 NBT 列表
+ */
+public final class RoadArchive {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("roadweaver");
+
+    private static final int MAGIC = 0x52574131; // "RWA1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int CHUNK_ENTRY_SIZE = 16;
+    private static final int ROAD_ENTRY_SIZE = 20;
+    private static final int POINT_SIZE = 12;
+
+    // 超过此大小的归档使用内存映射，其余读入堆内字节数组
+    private static final long MAP_THRESHOLD = 4L << 20;
+
+    // 关闭后为 null；读取持读锁，关闭持写锁，映射不会在读取途中被释放
+    private ByteBuffer buf;
+    private final boolean mapped;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int chunkCount;
+    private final int roadCount;
+    private final int roadTable;
+    private final List<List<BlockState>> materialSets;
+
+    private RoadArchive(ByteBuffer buf, boolean mapped, int chunkCount, int roadCount, List<List<BlockState>> materialSets) {
+        this.buf = buf;
+        this.mapped = mapped;
+        this.chunkCount = chunkCount;
+        this.roadCount = roadCount;
+        this.roadTable = HEADER_SIZE + chunkCount * CHUNK_ENTRY_SIZE;
+        this.materialSets = materialSets;
+    }
+
+    /**
+     * 将一组道路编码为归档文件内容；展开放置计划需要逐列采样高度，应在生成线程池上调用。
+     * heightAt 与生成时构建放置计划使用的采样器相同。失败时返回 null。
+     */
+    public static byte[] encode(List<Records.RoadData> roads, ModConfig cfg, IntBinaryOperator heightAt) {
+        try {
+            List<List<BlockState>> materialSets = new ArrayList<>();
+            Map<List<BlockState>, Integer> materialIndex = new HashMap<>();
+            int[] roadMaterials = new int[roads.size()];
+            Long2ObjectOpenHashMap<List<IndexedPiece>> byChunk = new Long2ObjectOpenHashMap<>();
+            for (int r = 0; r < roads.size(); r++) {
+                Records.RoadData data = roads.get(r);
+                roadMaterials[r] = materialIndex.computeIfAbsent(data.materials(), m -> {
+                    materialSets.add(m);
+                    return materialSets.size() - 1;
+                });
+                int road = r;
+                RoadPlacementPlan.build(data, cfg, heightAt).long2ObjectEntrySet().forEach(e ->
+                        byChunk.computeIfAbsent(e.getLongKey(), k -> new ArrayList<>()).add(new IndexedPiece(road, e.getValue())));
+            }
+            long[] keys = byChunk.keySet().toLongArray();
+            Arrays.sort(keys);
+
+            ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+            DataOutputStream chunkOut = new DataOutputStream(chunkBytes);
+            int[] chunkOffset = new int[keys.length];
+            int[] chunkLength = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                chunkOffset[i] = chunkOut.size();
+                List<IndexedPiece> pieces = byChunk.get(keys[i]);
+                chunkOut.writeInt(pieces.size());
+                for (IndexedPiece p : pieces) writePiece(chunkOut, p.road(), p.piece());
+                chunkLength[i] = chunkOut.size() - chunkOffset[i];
+            }
+            chunkOut.flush();
+
+            int chunkData = HEADER_SIZE + keys.length * CHUNK_ENTRY_SIZE + roads.size() * ROAD_ENTRY_SIZE;
+            int pointData = chunkData + chunkBytes.size();
+            int points = 0;
+            for (Records.RoadData data : roads) points += data.roadSegmentList().size();
+            int materialData = pointData + points * POINT_SIZE;
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(materialData + 1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(keys.length);
+            out.writeInt(roads.size());
+            out.writeInt(materialData);
+            for (int i = 0; i < keys.length; i++) {
+                out.writeLong(keys[i]);
+                out.writeInt(chunkData + chunkOffset[i]);
+                out.writeInt(chunkLength[i]);
+            }
+            int pointOffset = pointData;
+            for (int r = 0; r < roads.size(); r++) {
+                Records.RoadData data = roads.get(r);
+                int n = data.roadSegmentList().size();
+                out.writeInt(data.roadType());
+                out.writeInt(Math.max(1, data.width()));
+                out.writeInt(roadMaterials[r]);
+                out.writeInt(pointOffset);
+                out.writeInt(n);
+                pointOffset += n * POINT_SIZE;
+            }
+            chunkBytes.writeTo(out);
+            for (Records.RoadData data : roads) {
+                for (Records.RoadSegmentPlacement seg : data.roadSegmentList()) {
+                    BlockPos p = seg.middlePos();
+                    out.writeInt(p.getX());
+                    out.writeInt(p.getY());
+                    out.writeInt(p.getZ());
+                }
+            }
+            out.write(encodeMaterials(materialSets));
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("RoadWeaver: could not build road archive", e);
+            return null;
+        }
+    }
+
+    /**
+     * 写出已编码的归档（先写临时文件再原子替换），只做文件 IO，在写线程上调用。
+     */
+    public static boolean write(Path file, byte[] bytes) {
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.createDirectories(file.getParent());
+            Files.write(tmp, bytes);
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("RoadWeaver: could not write road archive {}", file, e);
+            return false;
+        }
+    }
+
+    /**
+     * 打开归档：小文件读入内存，大文件以只读内存映射打开；文件缺失或格式不符时返回 null。
+     */
+    public static RoadArchive open(Path file) {
+        if (!Files.exists(file)) return null;
+        ByteBuffer buf = null;
+        boolean mapped = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAP_THRESHOLD) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                mapped = true;
+            } else {
+                buf = ByteBuffer.wrap(Files.readAllBytes(file));
+            }
+            if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                if (mapped) unmap(buf);
+                return null;
+            }
+            int chunkCount = buf.getInt(8);
+            int roadCount = buf.getInt(12);
+            int materialData = buf.getInt(16);
+            byte[] materials = new byte[buf.limit() - materialData];
+            buf.get(materialData, materials);
+            return new RoadArchive(buf, mapped, chunkCount, roadCount, decodeMaterials(materials));
+        } catch (IOException | RuntimeException e) {
+            if (mapped) unmap(buf);
+            LOGGER.warn("RoadWeaver: could not open road archive {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 关闭归档并释放映射；之后的查询返回空结果。删除或替换归档文件前调用。
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (buf == null) return;
+            if (mapped) unmap(buf);
+            buf = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 解码穿过指定区块的放置计划；只读取该区块的数据，结果仅供本次放置使用。
+     */
+    public List<RoadPlacementPlan.Piece> pieces(long chunkKey) {
+        lock.readLock().lock();
+        try {
+            return buf != null ? readPieces(chunkKey) : Collections.emptyList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<RoadPlacementPlan.Piece> readPieces(long chunkKey) {
+        int entry = findChunk(chunkKey);
+        if (entry < 0) return Collections.emptyList();
+        int pos = buf.getInt(HEADER_SIZE + entry * CHUNK_ENTRY_SIZE + 8);
+        int count = buf.getInt(pos);
+        pos += 4;
+        List<RoadPlacementPlan.Piece> out = new ArrayList<>(count);
+        // 同一道路的多个片段共用一份中心点折线
+        Map<Integer, List<BlockPos>> polylines = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            int road = buf.getInt(pos);
+            int segs = buf.getInt(pos + 4);
+            int slotCount = buf.getInt(pos + 8);
+            pos += 12;
+            int[] segmentIndex = new int[segs];
+            int[] middles = new int[segs * 3];
+            int[] targetY = new int[segs];
+            int[] centerY = new int[segs];
+            int[] columnStart = new int[segs + 1];
+            int columnCount = 0;
+            int segPos = pos;
+            for (int s = 0; s < segs; s++) {
+                int cols = buf.getInt(segPos + 24);
+                columnCount += cols;
+                segPos += 28 + cols * 8;
+            }
+            int[] columns = new int[columnCount * 2];
+            int c = 0;
+            for (int s = 0; s < segs; s++) {
+                segmentIndex[s] = buf.getInt(pos);
+                middles[s * 3] = buf.getInt(pos + 4);
+                middles[s * 3 + 1] = buf.getInt(pos + 8);
+                middles[s * 3 + 2] = buf.getInt(pos + 12);
+                targetY[s] = buf.getInt(pos + 16);
+                centerY[s] = buf.getInt(pos + 20);
+                int cols = buf.getInt(pos + 24);
+                pos += 28;
+                for (int k = 0; k < cols * 2; k++, pos += 4) columns[c++] = buf.getInt(pos);
+                columnStart[s + 1] = c / 2;
+            }
+            List<RoadPlacementPlan.DecorationSlot> slots = new ArrayList<>(slotCount);
+            for (int k = 0; k < slotCount; k++) {
+                slots.add(new RoadPlacementPlan.DecorationSlot(buf.getInt(pos), readPos(pos + 4), readPos(pos + 16)));
+                pos += 28;
+            }
+            int entryPos = roadTable + road * ROAD_ENTRY_SIZE;
+            out.add(new RoadPlacementPlan.Piece(
+                    buf.getInt(entryPos),
+                    buf.getInt(entryPos + 4),
+                    materialSets.get(buf.getInt(entryPos + 8)),
+                    polylines.computeIfAbsent(road, this::readPolyline),
+                    segmentIndex, middles, targetY, centerY, columnStart, columns, slots));
+        }
+        return out;
+    }
+
+    /**
+     * 判断归档道路是否覆盖方块列 (x, z)；直接在缓冲区上扫描，不分配对象。
+     * 宽度方块可能越过中心点所在区块，因此同时检查相邻区块。
+     */
+    public boolean containsColumn(int x, int z) {
+        lock.readLock().lock();
+        try {
+            if (buf == null) return false;
+            int cx = x >> 4;
+            int cz = z >> 4;
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    int entry = findChunk(ChunkPos.asLong(cx + dx, cz + dz));
+                    if (entry >= 0 && chunkContains(buf.getInt(HEADER_SIZE + entry * CHUNK_ENTRY_SIZE + 8), x, z)) return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 每条道路的中心点折线（复制到堆内，关闭归档后仍可使用）。
+     */
+    public List<List<BlockPos>> polylines() {
+        lock.readLock().lock();
+        try {
+            if (buf == null) return Collections.emptyList();
+            List<List<BlockPos>> out = new ArrayList<>(roadCount);
+            for (int r = 0; r < roadCount; r++) out.add(readPolyline(r));
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<BlockPos> readPolyline(int road) {
+        int entryPos = roadTable + road * ROAD_ENTRY_SIZE;
+        int offset = buf.getInt(entryPos + 12);
+        int size = buf.getInt(entryPos + 16);
+        BlockPos[] points = new BlockPos[size];
+        for (int i = 0; i < size; i++) points[i] = readPos(offset + i * POINT_SIZE);
+        return List.of(points);
+    }
+
+    private boolean chunkContains(int pos, int x, int z) {
+        int count = buf.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < count; i++) {
+            int segs = buf.getInt(pos + 4);
+            int slotCount = buf.getInt(pos + 8);
+            pos += 12;
+            for (int s = 0; s < segs; s++) {
+                int cols = buf.getInt(pos + 24);
+                pos += 28;
+                for (int k = 0; k < cols; k++, pos += 8) {
+                    if (buf.getInt(pos) == x && buf.getInt(pos + 4) == z) return true;
+                }
+            }
+            pos += slotCount * 28;
+        }
+        return false;
+    }
+
+    private int findChunk(long chunkKey) {
+        int lo = 0;
+        int hi = chunkCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long key = buf.getLong(HEADER_SIZE + mid * CHUNK_ENTRY_SIZE);
+            if (key < chunkKey) lo = mid + 1;
+            else if (key > chunkKey) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private BlockPos readPos(int pos) {
+        return new BlockPos(buf.getInt(pos), buf.getInt(pos + 4), buf.getInt(pos + 8));
+    }
+
+    private static void writePiece(DataOutputStream out, int road, RoadPlacementPlan.Piece piece) throws IOException {
+        int segs = piece.segmentCount();
+        out.writeInt(road);
+        out.writeInt(segs);
+        out.writeInt(piece.slots().size());
+        int[] middles = piece.middles();
+        int[] columns = piece.columns();
+        int[] columnStart = piece.columnStart();
+        for (int s = 0; s < segs; s++) {
+            out.writeInt(piece.segmentIndex()[s]);
+            out.writeInt(middles[s * 3]);
+            out.writeInt(middles[s * 3 + 1]);
+            out.writeInt(middles[s * 3 + 2]);
+            out.writeInt(piece.targetY()[s]);
+            out.writeInt(piece.centerY()[s]);
+            out.writeInt(columnStart[s + 1] - columnStart[s]);
+            for (int c = columnStart[s] * 2; c < columnStart[s + 1] * 2; c++) out.writeInt(columns[c]);
+        }
+        for (RoadPlacementPlan.DecorationSlot slot : piece.slots()) {
+            out.writeInt(slot.segment());
+            writePos(out, slot.prev());
+            writePos(out, slot.next());
+        }
+    }
+
+    private static void writePos(DataOutputStream out, BlockPos p) throws IOException {
+        out.writeInt(p.getX());
+        out.writeInt(p.getY());
+        out.writeInt(p.getZ());
+    }
+
+    private static byte[] encodeMaterials(List<List<BlockState>> sets) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+        try {
+            buf.writeVarInt(sets.size());
+            for (List<BlockState> set : sets) {
+                buf.writeVarInt(set.size());
+                for (BlockState state : set) buf.writeNbt(NbtUtils.writeBlockState(state));
+            }
+            byte[] out = new byte[buf.readableBytes()];
+            buf.readBytes(out);
+            return out;
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static List<List<BlockState>> decodeMaterials(byte[] bytes) {
+        FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.wrappedBuffer(bytes));
+        int setCount = buf.readVarInt();
+        List<List<BlockState>> sets = new ArrayList<>(setCount);
+        for (int i = 0; i < setCount; i++) {
+            int n = buf.readVarInt();
+            List<BlockState> set = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                CompoundTag tag = buf.readNbt();
+                set.add(NbtUtils.readBlockState(BuiltInRegistries.BLOCK.asLookup(), tag != null ? tag : new CompoundTag()));
+            }
+            sets.add(List.copyOf(set));
+        }
+        return sets;
+    }
+
+    private record IndexedPiece(int road, RoadPlacementPlan.Piece piece) {}
+
+    // 运行时没有公开的释放映射接口：经 jdk.unsupported 的 Unsafe.invokeCleaner 释放，不可用时留给 GC
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(field.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("RoadWeaver: could not release road archive mapping", e);
+        }
+    }
+}
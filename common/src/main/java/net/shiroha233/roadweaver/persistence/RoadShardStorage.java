@@ -0,0 +1,501 @@
+package net.shiroha233.roadweaver.persistence;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.Dynamic;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.LongArrayTag;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.saveddata.SavedData;
+import net.minecraft.world.level.storage.DimensionDataStorage;
+import net.minecraft.world.level.storage.LevelResource;
+import net.shiroha233.roadweaver.config.ModConfig;
+import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.helpers.RoadBinaryCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.IntBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * 道路数据的区域分片存储（Common）。
+ * 每条道路按首个中心点所在区域（REGION_CHUNKS x REGION_CHUNKS 区块）归入一个分片，
+ * 每个分片是独立的 SavedData 文件，按需加载、只在后台保存有新增道路的分片；
+ * 另有一个小清单记录每个分片的道路触及了哪些区域，用于按区域定位分片。
+ * 连接全部结束的区域会被冻结为只读归档（见 RoadArchive），其道路不再驻留内存；
+ * 归档区域再出现新道路时从分片文件重新载入并取消归档。
+ */
+public final class RoadShardStorage {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("roadweaver");
+
+    public static final int REGION_CHUNKS = 32;
+    private static final int REGION_SHIFT = 4 + 5;
+
+    private static final String MANIFEST_NAME = "roadweaver_road_regions";
+    private static final String SHARD_PREFIX = "roadweaver_roads_r.";
+    private static final String ARCHIVE_DIR = "roadweaver_archive";
+
+    private static final Map<ServerLevel, RoadShardStorage> STORAGES = new ConcurrentHashMap<>();
+
+    private final DimensionDataStorage dataStorage;
+    private final Path dataDir;
+    private final Manifest manifest;
+    private final Long2ObjectOpenHashMap<Shard> loaded = new Long2ObjectOpenHashMap<>();
+    // 区域 -> 触及该区域的分片（由清单反向构建，仅内存）
+    private final Long2ObjectOpenHashMap<LongOpenHashSet> shardsByRegion = new Long2ObjectOpenHashMap<>();
+    // 已打开的归档（仅已归档分片）
+    private final Long2ObjectOpenHashMap<RoadArchive> archives = new Long2ObjectOpenHashMap<>();
+    // 正在后台构建归档的分片 -> 提交时的道路数
+    private final Long2IntOpenHashMap archiving = new Long2IntOpenHashMap();
+    private final ConcurrentLinkedQueue<ArchiveResult> archiveResults = new ConcurrentLinkedQueue<>();
+    // 维度卸载或服务器停止后置位，尚未开始的归档构建直接放弃
+    private volatile boolean closed;
+    // 整体替换或归档切换时递增，供派生索引判断是否需要重建
+    private volatile int generation;
+
+    private record ArchiveResult(long key, boolean ok) {}
+
+    private RoadShardStorage(ServerLevel level) {
+        this.dataStorage = level.getDataStorage();
+        this.dataDir = DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT)).resolve("data");
+        this.manifest = dataStorage.computeIfAbsent(Manifest::load, Manifest::new, MANIFEST_NAME);
+        manifest.touchedByShard.long2ObjectEntrySet().forEach(e -> {
+            for (long region : e.getValue()) {
+                shardsByRegion.computeIfAbsent(region, k -> new LongOpenHashSet()).add(e.getLongKey());
+            }
+        });
+    }
+
+    public static RoadShardStorage get(ServerLevel level) {
+        return STORAGES.computeIfAbsent(level, RoadShardStorage::new);
+    }
+
+    public static void clearAll() {
+        STORAGES.values().forEach(RoadShardStorage::close);
+        STORAGES.clear();
+    }
+
+    public static void unload(ServerLevel level) {
+        RoadShardStorage storage = STORAGES.remove(level);
+        if (storage != null) storage.close();
+    }
+
+    // 关闭全部归档（释放映射），之后不再构建新归档
+    private synchronized void close() {
+        closed = true;
+        archives.values().forEach(RoadArchive::close);
+        archives.clear();
+    }
+
+    public static long regionKey(int blockX, int blockZ) {
+        return (((long) (blockX >> REGION_SHIFT)) << 32) | ((blockZ >> REGION_SHIFT) & 0xffffffffL);
+    }
+
+    public static long regionKeyOfChunk(int chunkX, int chunkZ) {
+        return regionKey(chunkX << 4, chunkZ << 4);
+    }
+
+    /**
+     * 枚举方块矩形覆盖的全部区域键。
+     */
+    public static void forEachRegion(int minX, int minZ, int maxX, int maxZ, LongConsumer out) {
+        for (int rx = minX >> REGION_SHIFT; rx <= maxX >> REGION_SHIFT; rx++) {
+            for (int rz = minZ >> REGION_SHIFT; rz <= maxZ >> REGION_SHIFT; rz++) {
+                out.accept(((long) rx << 32) | (rz & 0xffffffffL));
+            }
+        }
+    }
+
+    /**
+     * 追加一条道路，只标记其所属分片（以及必要时的清单）为脏。
+     */
+    public boolean add(Records.RoadData data) {
+        return add(data, null);
+    }
+
+    /**
+     * 追加一条道路；onPersisted 在包含该道路的分片文件写入磁盘后于写线程上调用。
+     * 所属区域已归档且无法从分片文件重新载入时拒绝追加并返回 false，道路不会只存在于内存中。
+     */
+    public synchronized boolean add(Records.RoadData data, Runnable onPersisted) {
+        if (data == null || data.roadSegmentList() == null || data.roadSegmentList().isEmpty()) return true;
+        BlockPos first = data.roadSegmentList().get(0).middlePos();
+        long home = regionKey(first.getX(), first.getZ());
+        Shard shard = shard(home);
+        if (manifest.archived.contains(home) && !thaw(home, shard)) return false;
+        shard.roads.add(data);
+        shard.markUnsaved();
+        if (onPersisted != null) shard.onPersisted.add(onPersisted);
+
+        LongOpenHashSet touched = manifest.touchedByShard.computeIfAbsent(home, k -> new LongOpenHashSet());
+        boolean changed = touched.add(home);
+        for (Records.RoadSegmentPlacement seg : data.roadSegmentList()) {
+            BlockPos p = seg.middlePos();
+            long region = regionKey(p.getX(), p.getZ());
+            if (touched.add(region)) changed = true;
+        }
+        if (changed) {
+            for (long region : touched) {
+                shardsByRegion.computeIfAbsent(region, k -> new LongOpenHashSet()).add(home);
+            }
+            manifest.setDirty();
+        }
+        return true;
+    }
+
+    /**
+     * 返回触及指定区域的所有分片（按需加载）。
+     */
+    public synchronized List<Shard> shardsTouching(long regionKey) {
+        LongOpenHashSet keys = shardsByRegion.get(regionKey);
+        if (keys == null || keys.isEmpty()) return Collections.emptyList();
+        List<Shard> out = new ArrayList<>(keys.size());
+        for (long key : keys) out.add(shard(key));
+        return out;
+    }
+
+    /**
+     * 返回触及指定区域的已归档分片的归档。
+     */
+    public synchronized List<RoadArchive> archivesTouching(long regionKey) {
+        LongOpenHashSet keys = shardsByRegion.get(regionKey);
+        if (keys == null || keys.isEmpty()) return Collections.emptyList();
+        List<RoadArchive> out = null;
+        for (long key : keys) {
+            if (!manifest.archived.contains(key)) continue;
+            shard(key);
+            RoadArchive archive = archives.get(key);
+            if (archive == null) continue;
+            if (out == null) out = new ArrayList<>(2);
+            out.add(archive);
+        }
+        return out != null ? out : Collections.emptyList();
+    }
+
+    public synchronized boolean hasArchives() {
+        return !manifest.archived.isEmpty();
+    }
+
+    /**
+     * 方块列 (x, z) 是否位于已归档的道路上。
+     */
+    public boolean archivedColumn(int x, int z) {
+        for (RoadArchive archive : archivesTouching(regionKey(x, z))) {
+            if (archive.containsColumn(x, z)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 全部道路的中心点折线（含已归档区域，归档折线按需从映射内存读取）。
+     */
+    public synchronized List<List<BlockPos>> roadPolylines() {
+        List<List<BlockPos>> out = new ArrayList<>();
+        for (long key : manifest.touchedByShard.keySet()) {
+            Shard shard = shard(key);
+            for (Records.RoadData data : shard.roads) {
+                List<Records.RoadSegmentPlacement> segs = data.roadSegmentList();
+                List<BlockPos> poly = new ArrayList<>(segs.size());
+                for (Records.RoadSegmentPlacement seg : segs) poly.add(seg.middlePos());
+                out.add(poly);
+            }
+            RoadArchive archive = archives.get(key);
+            if (archive != null) out.addAll(archive.polylines());
+        }
+        return out;
+    }
+
+    /**
+     * 为已加载、已落盘且所触及区域都不再有待生成连接的分片构建归档（服务器线程调用）。
+     * 展开放置计划需要逐列采样高度，在 pool（生成线程池）上完成；写线程只负责写出编码好的字节，
+     * 排在此前提交的分片写入之后。完成后由 applyArchived 切换。
+     */
+    public synchronized void archiveIdle(LongPredicate busyRegion, ModConfig cfg, IntBinaryOperator heightAt, Executor pool) {
+        if (closed) return;
+        loaded.long2ObjectEntrySet().forEach(e -> {
+            long key = e.getLongKey();
+            Shard shard = e.getValue();
+            if (manifest.archived.contains(key) || archiving.containsKey(key)) return;
+            if (shard.unsaved || shard.roads.isEmpty()) return;
+            LongOpenHashSet touched = manifest.touchedByShard.get(key);
+            if (touched == null) return;
+            for (long region : touched) {
+                if (busyRegion.test(region)) return;
+            }
+            List<Records.RoadData> snapshot = List.copyOf(shard.roads);
+            archiving.put(key, snapshot.size());
+            Path file = archiveFile(key);
+            pool.execute(() -> {
+                // 维度已卸载或服务器已停止：不再采样高度
+                byte[] bytes = closed ? null : RoadArchive.encode(snapshot, cfg, heightAt);
+                if (bytes == null) {
+                    archiveResults.add(new ArchiveResult(key, false));
+                    return;
+                }
+                AsyncDataWriter.afterPendingWrites(() ->
+                        archiveResults.add(new ArchiveResult(key, RoadArchive.write(file, bytes))));
+            });
+        });
+    }
+
+    /**
+     * 切换已构建完成的归档：释放分片在内存中的道路，之后改由归档读取（服务器线程调用）。
+     */
+    public synchronized void applyArchived() {
+        ArchiveResult result;
+        while ((result = archiveResults.poll()) != null) {
+            long key = result.key();
+            // 已被整体替换清空的构建结果
+            if (!archiving.containsKey(key)) continue;
+            int expected = archiving.remove(key);
+            Shard shard = loaded.get(key);
+            // 构建期间分片有新增道路或被整体替换：放弃本次归档，之后重新检查
+            if (!result.ok() || shard == null || shard.unsaved || shard.roads.size() != expected) continue;
+            RoadArchive archive = RoadArchive.open(archiveFile(key));
+            if (archive == null) continue;
+            archives.put(key, archive);
+            manifest.archived.add(key);
+            manifest.setDirty();
+            // 分片文件保持不变，不会再被写入，解冻时从中重新载入
+            shard.roads.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * 全量道路列表（会加载全部分片，不含已归档区域），仅供需要遍历全部道路的旧调用方使用。
+     */
+    public synchronized List<Records.RoadData> allRoads() {
+        List<Records.RoadData> out = new ArrayList<>();
+        for (long key : manifest.touchedByShard.keySet()) {
+            out.addAll(shard(key).roads);
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    /**
+     * 整体替换全部道路（兼容旧的 setRoadDataList 语义）。
+     */
+    public synchronized void replaceAll(List<Records.RoadData> roads) {
+        for (long key : manifest.touchedByShard.keySet()) {
+            Shard shard = shard(key);
+            if (manifest.archived.contains(key)) {
+                // 已归档分片未登记到 DimensionDataStorage，登记后才能写出空分片
+                dataStorage.set(shardName(key), shard);
+                deleteArchive(key);
+            }
+            shard.roads.clear();
+            shard.markUnsaved();
+        }
+        archiving.clear();
+        manifest.archived.clear();
+        manifest.touchedByShard.clear();
+        manifest.setDirty();
+        shardsByRegion.clear();
+        generation++;
+        if (roads != null) {
+            for (Records.RoadData data : roads) add(data);
+        }
+    }
+
+    public int generation() {
+        return generation;
+    }
+
+    public synchronized boolean isEmpty() {
+        return manifest.touchedByShard.isEmpty();
+    }
+
+    private Shard shard(long key) {
+        Shard shard = loaded.get(key);
+        if (shard == null) {
+            if (manifest.archived.contains(key)) {
+                RoadArchive archive = RoadArchive.open(archiveFile(key));
+                if (archive != null) {
+                    // 已归档：不读取分片文件，内存中只保留一个空分片
+                    archives.put(key, archive);
+                    shard = new Shard();
+                    loaded.put(key, shard);
+                    return shard;
+                }
+                // 归档缺失或损坏，退回读取分片文件
+                manifest.archived.remove(key);
+                manifest.setDirty();
+            }
+            shard = dataStorage.computeIfAbsent(Shard::load, Shard::new, shardName(key));
+            loaded.put(key, shard);
+        }
+        return shard;
+    }
+
+    // 归档区域出现新道路：从分片文件重新载入道路并取消归档；失败时保持归档不变并返回 false
+    private boolean thaw(long key, Shard shard) {
+        String name = shardName(key);
+        try {
+            CompoundTag tag = dataStorage.readTagFromDisk(name, SharedConstants.getCurrentVersion().getDataVersion().getVersion());
+            shard.roads.addAll(Shard.load(tag.getCompound("data")).roads);
+        } catch (IOException | RuntimeException e) {
+            // 归档、分片文件与内存中的空分片都保持原样，由调用方拒绝新道路
+            LOGGER.error("RoadWeaver: could not reload archived shard {}", name, e);
+            return false;
+        }
+        dataStorage.set(name, shard);
+        manifest.archived.remove(key);
+        manifest.setDirty();
+        deleteArchive(key);
+        generation++;
+        return true;
+    }
+
+    // 先关闭并移除已打开的归档：映射存活时 Windows 上无法删除文件
+    private void deleteArchive(long key) {
+        RoadArchive archive = archives.remove(key);
+        if (archive != null) archive.close();
+        try {
+            Files.deleteIfExists(archiveFile(key));
+        } catch (IOException e) {
+            LOGGER.warn("RoadWeaver: could not delete road archive for region {}", key, e);
+        }
+    }
+
+    private static String shardName(long key) {
+        return SHARD_PREFIX + (int) (key >> 32) + "." + (int) key;
+    }
+
+    private Path archiveFile(long key) {
+        return dataDir.resolve(ARCHIVE_DIR).resolve("r." + (int) (key >> 32) + "." + (int) key + ".bin");
+    }
+
+    /**
+     * 单个区域分片：该区域内起始的全部道路。
+     */
+    public static final class Shard extends SavedData {
+        // 旧版 Codec 列表格式，仅读取
+        private static final String KEY_ROADS = "roads";
+        private static final String KEY_ROADS_BIN = "roads_bin";
+
+        // 生成线程追加、世界生成线程读取，写时复制保证读取无锁
+        private final List<Records.RoadData> roads = new CopyOnWriteArrayList<>();
+        // 不使用 SavedData 的脏标记：原版会在主线程上编码，这里改为后台写入
+        private volatile boolean unsaved;
+        // 下一次写入完成后要通知的回调；写入失败时由写线程放回
+        private final ConcurrentLinkedQueue<Runnable> onPersisted = new ConcurrentLinkedQueue<>();
+
+        public Shard() {}
+
+        public static Shard load(CompoundTag tag) {
+            Shard shard = new Shard();
+            if (tag.contains(KEY_ROADS_BIN, Tag.TAG_BYTE_ARRAY)) {
+                shard.roads.addAll(RoadBinaryCodec.decode(tag.getByteArray(KEY_ROADS_BIN)));
+            } else if (tag.contains(KEY_ROADS)) {
+                Codec.list(Records.RoadData.CODEC).parse(new Dynamic<>(NbtOps.INSTANCE, tag.get(KEY_ROADS)))
+                        .result()
+                        .ifPresent(shard.roads::addAll);
+            }
+            return shard;
+        }
+
+        @Override
+        public CompoundTag save(CompoundTag tag) {
+            return encode(tag, roads);
+        }
+
+        /**
+         * 只处理有新增道路的分片：主线程拍下道路列表快照，编码与写文件在后台完成。
+         */
+        @Override
+        public void save(File file) {
+            if (!unsaved) return;
+            unsaved = false;
+            List<Records.RoadData> snapshot = List.copyOf(roads);
+            List<Runnable> callbacks = new ArrayList<>();
+            Runnable r;
+            while ((r = onPersisted.poll()) != null) callbacks.add(r);
+            AsyncDataWriter.submit(file, () -> encode(new CompoundTag(), snapshot), callbacks, this::requeue);
+        }
+
+        // 写入失败：保持未保存状态，回调留到下一次保存
+        private void requeue(List<Runnable> callbacks) {
+            onPersisted.addAll(callbacks);
+            unsaved = true;
+        }
+
+        void markUnsaved() {
+            unsaved = true;
+        }
+
+        private static CompoundTag encode(CompoundTag tag, List<Records.RoadData> roads) {
+            tag.putByteArray(KEY_ROADS_BIN, RoadBinaryCodec.encode(roads));
+            return tag;
+        }
+
+        public int size() {
+            return roads.size();
+        }
+
+        public Records.RoadData get(int index) {
+            return roads.get(index);
+        }
+    }
+
+    /**
+     * 分片清单：分片键 -> 该分片道路触及的区域键，以及已归档的分片键。
+     */
+    private static final class Manifest extends SavedData {
+        private static final String KEY_SHARDS = "shards";
+        private static final String KEY_ARCHIVED = "archived";
+
+        private final Long2ObjectOpenHashMap<LongOpenHashSet> touchedByShard = new Long2ObjectOpenHashMap<>();
+        private final LongOpenHashSet archived = new LongOpenHashSet();
+
+        Manifest() {}
+
+        static Manifest load(CompoundTag tag) {
+            Manifest m = new Manifest();
+            ListTag list = tag.getList(KEY_SHARDS, Tag.TAG_COMPOUND);
+            for (int i = 0; i < list.size(); i++) {
+                CompoundTag entry = list.getCompound(i);
+                m.touchedByShard.put(entry.getLong("key"), new LongOpenHashSet(entry.getLongArray("regions")));
+            }
+            for (long key : tag.getLongArray(KEY_ARCHIVED)) m.archived.add(key);
+            return m;
+        }
+
+        @Override
+        public CompoundTag save(CompoundTag tag) {
+            ListTag list = new ListTag();
+            touchedByShard.long2ObjectEntrySet().forEach(e -> {
+                CompoundTag entry = new CompoundTag();
+                entry.putLong("key", e.getLongKey());
+                entry.put("regions", new LongArrayTag(e.getValue().toLongArray()));
+                list.add(entry);
+            });
+            tag.put(KEY_SHARDS, list);
+            tag.put(KEY_ARCHIVED, new LongArrayTag(archived.toLongArray()));
+            return tag;
+        }
+    }
+}
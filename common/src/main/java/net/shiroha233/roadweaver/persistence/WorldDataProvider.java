@@ -23,13 +23,74 @@ public abstract class WorldDataProvider {
     public abstract Records.StructureLocationData getStructureLocations(ServerLevel level);
     public abstract void setStructureLocations(ServerLevel level, Records.StructureLocationData data);
 
-    // 结构连接
-    public abstract List<Records.StructureConnection> getStructureConnections(ServerLevel level);
-    public abstract void setStructureConnections(ServerLevel level, List<Records.StructureConnection> connections);
+    // 结构连接：按边键索引的存储（见 ConnectionStore），返回的列表为只读视图
+    public List<Records.StructureConnection> getStructureConnections(ServerLevel level) {
+        return getConnectionStore(level).view();
+    }
+
+    public void setStructureConnections(ServerLevel level, List<Records.StructureConnection> connections) {
+        getConnectionStore(level).replaceAll(connections);
+        markConnectionsDirty(level);
+    }
+
+    // 原地更新单条连接的状态，只有实际变化时才标记脏
+    public void updateConnectionStatus(ServerLevel level, Records.StructureConnection conn, Records.ConnectionStatus status) {
+        if (conn == null) return;
+        if (getConnectionStore(level).setStatus(conn.from(), conn.to(), status) > 0) {
+            markConnectionsDirty(level);
+            // 同时写入状态日志，崩溃后可恢复两次保存之间的迁移
+            ConnectionJournal.get(level).status(conn, status);
+        }
+    }
+
+    // 按端点（不分方向）查找连接的当前状态，不存在时返回 null
+    public Records.StructureConnection findConnection(ServerLevel level, BlockPos a, BlockPos b) {
+        return getConnectionStore(level).find(a, b);
+    }
+
+    // 各状态计数，下标为 ConnectionStatus.ordinal()
+    public int[] getConnectionStatusCounts(ServerLevel level) {
+        return getConnectionStore(level).counts();
+    }
+
+    protected abstract ConnectionStore getConnectionStore(ServerLevel level);
+    protected abstract void markConnectionsDirty(ServerLevel level);
     
-    // 道路数据
-    public abstract List<Records.RoadData> getRoadDataList(ServerLevel level);
-    public abstract void setRoadDataList(ServerLevel level, List<Records.RoadData> roadDataList);
+    // 道路数据：按区域分片存储（见 RoadShardStorage），旧版单体数据在首次访问时迁移
+    // 全量列表会加载全部分片，不要在每 tick 的路径上调用
+    public List<Records.RoadData> getRoadDataList(ServerLevel level) {
+        return getRoadStorage(level).allRoads();
+    }
+
+    public void setRoadDataList(ServerLevel level, List<Records.RoadData> roadDataList) {
+        getRoadStorage(level).replaceAll(roadDataList);
+    }
+
+    // 追加单条道路，只使其所属分片变脏
+    public void addRoadData(ServerLevel level, Records.RoadData data) {
+        getRoadStorage(level).add(data);
+    }
+
+    // 追加生成结果，分片写入磁盘后在状态日志中记录该连接的道路已落盘；无法写入时返回 false
+    public boolean addRoadData(ServerLevel level, Records.StructureConnection conn, Records.RoadData data) {
+        ConnectionJournal journal = ConnectionJournal.get(level);
+        return getRoadStorage(level).add(data, () -> journal.roadPersisted(conn));
+    }
+
+    public RoadShardStorage getRoadStorage(ServerLevel level) {
+        RoadShardStorage storage = RoadShardStorage.get(level);
+        // 生成线程与主线程都可能首次访问，迁移过程在分片存储上串行
+        synchronized (storage) {
+            List<Records.RoadData> legacy = drainLegacyRoadData(level);
+            if (legacy != null && !legacy.isEmpty()) {
+                for (Records.RoadData data : legacy) storage.add(data);
+            }
+        }
+        return storage;
+    }
+
+    // 取出并清空旧版单体存储（road_chunk_data_map）中的道路，用于迁移到分片
+    protected abstract List<Records.RoadData> drainLegacyRoadData(ServerLevel level);
     
     // 便捷方法：添加单个结构位置
     public void addStructureLocation(ServerLevel level, BlockPos pos) {
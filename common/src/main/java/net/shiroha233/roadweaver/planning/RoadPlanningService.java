@@ -8,7 +8,9 @@ import net.shiroha233.roadweaver.client.map.MapDataCollector;
 import net.shiroha233.roadweaver.client.map.MapSnapshot;
 import net.shiroha233.roadweaver.config.ConfigService;
 import net.shiroha233.roadweaver.config.ModConfig;
+import net.shiroha233.roadweaver.generation.RoadGenerationService;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.helpers.WidthTemplate;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 import net.shiroha233.roadweaver.features.roadlogic.DynamicAStarPathfinder;
 
@@ -41,26 +43,67 @@ public final class RoadPlanningService {
         if (!Level.OVERWORLD.equals(level.dimension())) return;
         ModConfig cfg = ConfigService.get();
         if (!cfg.dynamicPlanEnabled()) return;
-        int radiusChunks = Math.max(1, cfg.dynamicPlanRadiusChunks());
-        int stride = Math.max(1, cfg.dynamicPlanStrideChunks());
-        int tile = Math.max(8, Math.min(256, stride));
+        int tile = getStrideTileSizeChunks();
         int pcx = player.chunkPosition().x;
         int pcz = player.chunkPosition().z;
-        int kx = floorDiv(pcx, tile);
-        int kz = floorDiv(pcz, tile);
-        long key = (((long) kx) << 32) ^ (kz & 0xffffffffL);
+        planTile(level, floorDiv(pcx, tile), floorDiv(pcz, tile), pcx, pcz);
+    }
+
+    /**
+     * 空闲预规划：在出生点与在线玩家周围按环向外找到第一个尚未规划的 tile，并按玩家位于其中心时的范围规划。
+     * 每次调用至多规划一个 tile；玩家之后进入该 tile 时不再触发同步规划。返回是否规划了新 tile。
+     */
+    public static boolean planAhead(ServerLevel level) {
+        if (!Level.OVERWORLD.equals(level.dimension())) return false;
+        ModConfig cfg = ConfigService.get();
+        if (!cfg.dynamicPlanEnabled() || !cfg.speculativePlanning()) return false;
+        int tile = getStrideTileSizeChunks();
+        List<int[]> anchors = new ArrayList<>();
+        BlockPos spawn = level.getSharedSpawnPos();
+        anchors.add(new int[]{floorDiv(spawn.getX() >> 4, tile), floorDiv(spawn.getZ() >> 4, tile)});
+        for (ServerPlayer p : level.players()) {
+            anchors.add(new int[]{floorDiv(p.chunkPosition().x, tile), floorDiv(p.chunkPosition().z, tile)});
+        }
+        Set<Long> planned = PLANNED_TILES.computeIfAbsent(level, l -> ConcurrentHashMap.newKeySet());
+        int maxRing = Math.max(1, cfg.speculativeRingTiles());
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int[] a : anchors) {
+                for (int dx = -ring; dx <= ring; dx++) {
+                    for (int dz = -ring; dz <= ring; dz++) {
+                        // 只枚举环上的 tile
+                        if (Math.max(Math.abs(dx), Math.abs(dz)) != ring) continue;
+                        int kx = a[0] + dx;
+                        int kz = a[1] + dz;
+                        if (planned.contains(tileKey(kx, kz))) continue;
+                        return planTile(level, kx, kz, kx * tile + tile / 2, kz * tile + tile / 2);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // 规划以 (centerChunkX, centerChunkZ) 为中心的动态范围；tile 已规划过时直接返回 false
+    private static boolean planTile(ServerLevel level, int kx, int kz, int centerChunkX, int centerChunkZ) {
+        long key = tileKey(kx, kz);
         Set<Long> set = PLANNED_TILES.computeIfAbsent(level, l -> ConcurrentHashMap.newKeySet());
         boolean isNewTile = set.add(key);
-        // 记录该 tile 的规划中心（玩家当时的区块坐标），用于地图覆盖重建
+        // 记录该 tile 的规划中心（规划时的区块坐标），用于地图覆盖重建
         java.util.concurrent.ConcurrentHashMap<Long, Long> centers = PLANNED_TILE_CENTERS.computeIfAbsent(level, l -> new java.util.concurrent.ConcurrentHashMap<>());
-        centers.putIfAbsent(key, (((long) pcx) << 32) ^ (pcz & 0xffffffffL));
-        if (!isNewTile) return; 
-
-        int minX = (pcx - radiusChunks) * 16;
-        int maxX = (pcx + radiusChunks) * 16;
-        int minZ = (pcz - radiusChunks) * 16;
-        int maxZ = (pcz + radiusChunks) * 16;
+        centers.putIfAbsent(key, (((long) centerChunkX) << 32) ^ (centerChunkZ & 0xffffffffL));
+        if (!isNewTile) return false;
+
+        int radiusChunks = Math.max(1, ConfigService.get().dynamicPlanRadiusChunks());
+        int minX = (centerChunkX - radiusChunks) * 16;
+        int maxX = (centerChunkX + radiusChunks) * 16;
+        int minZ = (centerChunkZ - radiusChunks) * 16;
+        int maxZ = (centerChunkZ + radiusChunks) * 16;
         planRect(level, minX, minZ, maxX, maxZ);
+        return true;
+    }
+
+    private static long tileKey(int kx, int kz) {
+        return (((long) kx) << 32) ^ (kz & 0xffffffffL);
     }
 
     private static void planRect(ServerLevel level, int minBlockX, int minBlockZ, int maxBlockX, int maxBlockZ) {
@@ -127,10 +170,13 @@ public final class RoadPlanningService {
 
         ArrayList<Records.StructureConnection> incoming = new ArrayList<>(updatedEdges);
         incoming.addAll(bridges);
-        List<Records.StructureConnection> merged = mergeConnections(existing, incoming);
+        List<Records.StructureConnection> added = new ArrayList<>();
+        List<Records.StructureConnection> merged = mergeConnections(existing, incoming, added);
         if (merged.size() != existing.size()) {
             provider.setStructureConnections(level, merged);
         }
+        // 新边直接推入生成队列，生成服务无需每 tick 重新扫描全部连接
+        RoadGenerationService.enqueueAll(level, added);
         
         // 清除相关区域的路径缓存
         PathCache.clearPathsInArea(new BlockPos((minBlockX + maxBlockX) / 2, 0, (minBlockZ + maxBlockZ) / 2), 
@@ -138,7 +184,8 @@ public final class RoadPlanningService {
     }
 
     private static List<Records.StructureConnection> mergeConnections(List<Records.StructureConnection> existing,
-                                                                      List<Records.StructureConnection> incoming) {
+                                                                      List<Records.StructureConnection> incoming,
+                                                                      List<Records.StructureConnection> added) {
         HashSet<Long> seen = new HashSet<>();
         ArrayList<Records.StructureConnection> out = new ArrayList<>();
         if (existing != null) {
@@ -149,7 +196,11 @@ public final class RoadPlanningService {
         }
         for (Records.StructureConnection c : incoming) {
             long k = PlanningUtils.edgeKey(c.from(), c.to());
-            if (seen.add(k)) out.add(new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.PLANNED));
+            if (seen.add(k)) {
+                Records.StructureConnection planned = new Records.StructureConnection(c.from(), c.to(), Records.ConnectionStatus.PLANNED);
+                out.add(planned);
+                added.add(planned);
+            }
         }
         return out;
     }
@@ -226,6 +277,21 @@ public final class RoadPlanningService {
         
         if (updated.size() != existing.size()) {
             provider.setStructureConnections(level, updated);
+            HashSet<Long> before = new HashSet<>();
+            for (Records.StructureConnection c : existing) before.add(PlanningUtils.edgeKey(c.from(), c.to()));
+            HashSet<Long> after = new HashSet<>();
+            List<Records.StructureConnection> added = new ArrayList<>();
+            for (Records.StructureConnection c : updated) {
+                long k = PlanningUtils.edgeKey(c.from(), c.to());
+                after.add(k);
+                if (!before.contains(k)) added.add(c);
+            }
+            // 被移除的边从生成服务中注销，之后重新规划出同一条边时可以再次入队
+            for (Records.StructureConnection c : existing) {
+                if (!after.contains(PlanningUtils.edgeKey(c.from(), c.to()))) RoadGenerationService.forget(level, c);
+            }
+            // 移除节点后可能补入新的桥接边，只推送这些新边
+            RoadGenerationService.enqueueAll(level, added);
             PathCache.clearPathsInArea(structurePos, 1000);
         }
     }
@@ -262,7 +328,7 @@ public final class RoadPlanningService {
         for (BlockPos pos : path) {
             List<BlockPos> widthPositions = new ArrayList<>();
             widthPositions.add(pos);
-            result.add(new Records.RoadSegmentPlacement(pos, widthPositions));
+            result.add(WidthTemplate.compact(pos, widthPositions));
         }
         return result;
     }
@@ -0,0 +1,255 @@
+package net.shiroha233.roadweaver.features.decoration.system;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.tags.BlockTags;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.WorldGenLevel;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.levelgen.Heightmap;
+import net.shiroha233.roadweaver.config.ModConfig;
+import net.shiroha233.roadweaver.features.decoration.RoadFeatureCompat;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 路面写入的黄金输出测试：同一条固定道路分别走旧的 BlockPos 实现（保留在本类中）
+ * 和当前的线程内游标实现，逐次比较 setBlock 调用与最终方块。
+ */
+class RoadDecorationSystemTest {
+    private static final long SEED = 0x5eed_2331L;
+    private static final int MIN_Y = -64;
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    void cursorPathMatchesLegacyPathOnFixedRoad() {
+        List<BlockState> materials = List.of(
+                Blocks.STONE_BRICKS.defaultBlockState(),
+                Blocks.POLISHED_ANDESITE.defaultBlockState(),
+                Blocks.COBBLESTONE.defaultBlockState());
+        for (int roadType = 0; roadType <= 1; roadType++) {
+            for (int radius : new int[]{0, 8}) {
+                ModConfig cfg = new ModConfig();
+                cfg.setAveragingRadius(radius);
+
+                FakeLevel legacy = new FakeLevel(SEED);
+                FakeLevel current = new FakeLevel(SEED);
+                RandomSource legacyRandom = RandomSource.create(SEED);
+                RandomSource currentRandom = RandomSource.create(SEED);
+                for (int[] c : roadColumns()) {
+                    legacyPlaceOnSurface(legacy.proxy, new BlockPos(c[0], c[1], c[2]), materials, roadType, legacyRandom, cfg);
+                    RoadDecorationSystem.placeOnSurface(current.proxy, c[0], c[1], c[2], materials, roadType, currentRandom, cfg);
+                }
+
+                String label = "roadType=" + roadType + ", averagingRadius=" + radius;
+                assertFalse(legacy.writes.isEmpty(), label);
+                assertEquals(legacy.writes, current.writes, label);
+                assertEquals(legacy.blocks, current.blocks, label);
+                assertEquals(legacyRandom.nextLong(), currentRandom.nextLong(), label);
+            }
+        }
+    }
+
+    // 固定道路：一条斜穿起伏地形的折线，宽 5 格，目标高度取自地形并带平滑误差
+    private static List<int[]> roadColumns() {
+        List<int[]> out = new ArrayList<>();
+        for (int i = 0; i < 96; i++) {
+            int cx = -40 + i;
+            int cz = -20 + (i * 2) / 3;
+            int y = terrainHeight(SEED, cx, cz) + (i % 7) - 3;
+            for (int w = -2; w <= 2; w++) {
+                out.add(new int[]{cx, y, cz + w});
+            }
+        }
+        return out;
+    }
+
+    private static int terrainHeight(long seed, int x, int z) {
+        long h = seed ^ (x * 0x9E3779B97F4A7C15L) ^ (z * 0xC2B2AE3D27D4EB4FL);
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= h >>> 32;
+        return 64 + (int) Math.floorMod(h, 9L) + (x >> 3);
+    }
+
+    /**
+     * 最小的 WorldGenLevel：按种子生成确定的地形（石头/草方块、悬空沙层、树叶、原木、冰、水），
+     * 记录每次 setBlock。
+     */
+    private static final class FakeLevel {
+        final Map<BlockPos, BlockState> blocks = new HashMap<>();
+        final List<String> writes = new ArrayList<>();
+        final WorldGenLevel proxy;
+        private final long seed;
+
+        FakeLevel(long seed) {
+            this.seed = seed;
+            this.proxy = (WorldGenLevel) Proxy.newProxyInstance(
+                    WorldGenLevel.class.getClassLoader(),
+                    new Class<?>[]{WorldGenLevel.class},
+                    (self, method, args) -> switch (method.getName()) {
+                        case "getBlockState" -> getBlockState((BlockPos) args[0]);
+                        case "setBlock" -> setBlock((BlockPos) args[0], (BlockState) args[1], (Integer) args[2]);
+                        case "getHeight" -> args != null && args.length == 3
+                                ? surfaceHeight((Integer) args[1], (Integer) args[2])
+                                : 384;
+                        case "getMinBuildHeight" -> MIN_Y;
+                        case "getMaxBuildHeight" -> MIN_Y + 384;
+                        case "hashCode" -> System.identityHashCode(self);
+                        case "equals" -> self == args[0];
+                        case "toString" -> "FakeLevel";
+                        default -> defaultValue(method.getReturnType());
+                    });
+        }
+
+        private BlockState getBlockState(BlockPos pos) {
+            BlockState set = blocks.get(pos);
+            return set != null ? set : generated(pos.getX(), pos.getY(), pos.getZ());
+        }
+
+        private boolean setBlock(BlockPos pos, BlockState state, int flags) {
+            BlockPos key = pos.immutable();
+            writes.add(key.getX() + "," + key.getY() + "," + key.getZ() + "=" + state + "/" + flags);
+            blocks.put(key, state);
+            return true;
+        }
+
+        private int surfaceHeight(int x, int z) {
+            for (int y = MIN_Y + 383; y >= MIN_Y; y--) {
+                if (!getBlockState(new BlockPos(x, y, z)).isAir()) return y + 1;
+            }
+            return MIN_Y;
+        }
+
+        private BlockState generated(int x, int y, int z) {
+            if (y < MIN_Y) return Blocks.AIR.defaultBlockState();
+            int h = terrainHeight(seed, x, z);
+            int kind = Math.floorMod(x * 31 + z * 17, 11);
+            if (kind == 0 && y >= h - 6 && y < h - 1) {
+                // 悬空地表：下方掏空，触发堤道填充
+                return Blocks.AIR.defaultBlockState();
+            }
+            if (y < h - 1) return Blocks.STONE.defaultBlockState();
+            if (y == h - 1) {
+                return switch (kind) {
+                    case 1 -> Blocks.OAK_LEAVES.defaultBlockState();
+                    case 2 -> Blocks.ICE.defaultBlockState();
+                    case 3 -> Blocks.SAND.defaultBlockState();
+                    case 4 -> Blocks.WATER.defaultBlockState();
+                    default -> Blocks.GRASS_BLOCK.defaultBlockState();
+                };
+            }
+            if (kind == 5 && y < h + 3) return Blocks.OAK_LOG.defaultBlockState();
+            if (kind == 6 && y == h) return Blocks.GRASS.defaultBlockState();
+            return Blocks.AIR.defaultBlockState();
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            if (!type.isPrimitive()) return null;
+            if (type == boolean.class) return false;
+            if (type == long.class) return 0L;
+            if (type == float.class) return 0f;
+            if (type == double.class) return 0d;
+            if (type == void.class) return null;
+            return 0;
+        }
+    }
+
+    // ---- 改写前（逐次 new BlockPos）的实现，作为参照 ----
+
+    private static void legacyPlaceOnSurface(WorldGenLevel world, BlockPos placePos, List<BlockState> material, int roadType, RandomSource random, ModConfig cfg) {
+        double naturalBlockChance = 0.5;
+        BlockPos surfacePos = placePos;
+        if (roadType == 1 || Math.max(0, cfg.averagingRadius()) == 0) {
+            int topY = world.getHeight(Heightmap.Types.WORLD_SURFACE_WG, placePos.getX(), placePos.getZ());
+            surfacePos = new BlockPos(placePos.getX(), topY, placePos.getZ());
+        }
+        int topYForBelow = world.getHeight(Heightmap.Types.WORLD_SURFACE_WG, surfacePos.getX(), surfacePos.getZ());
+        BlockPos belowTop = new BlockPos(surfacePos.getX(), topYForBelow - 1, surfacePos.getZ());
+        BlockState blockStateAtPos = world.getBlockState(belowTop);
+        if (roadType == 0 || random.nextDouble() < naturalBlockChance) {
+            legacyPlaceRoadBlock(world, blockStateAtPos, surfacePos, material, random);
+        }
+    }
+
+    private static void legacyPlaceRoadBlock(WorldGenLevel world, BlockState blockBelow, BlockPos surfacePos, List<BlockState> materials, RandomSource random) {
+        if (!legacyPlaceAllowed(blockBelow.getBlock())) return;
+        BlockState chosen = materials.get(random.nextInt(materials.size()));
+
+        final int MAX_CAUSEWAY_DEPTH = 12;
+        BlockPos below1 = surfacePos.below();
+        BlockPos below2 = surfacePos.below(2);
+        boolean sturdy1 = world.getBlockState(below1).isFaceSturdy(world, below1, Direction.UP);
+        boolean sturdy2 = world.getBlockState(below2).isFaceSturdy(world, below2, Direction.UP);
+
+        if (!sturdy1 && !sturdy2) {
+            BlockPos cursor = below2;
+            int depth = 0;
+            BlockPos base = null;
+            while (cursor.getY() > world.getMinBuildHeight() && depth < MAX_CAUSEWAY_DEPTH) {
+                if (world.getBlockState(cursor).isFaceSturdy(world, cursor, Direction.UP)) {
+                    base = cursor;
+                    break;
+                }
+                cursor = cursor.below();
+                depth++;
+            }
+
+            BlockPos fillStart = (base != null) ? base.above() : below1.below(Math.min(MAX_CAUSEWAY_DEPTH - 1, Math.max(0, below1.getY() - world.getMinBuildHeight())));
+            if (fillStart.getY() < world.getMinBuildHeight()) {
+                fillStart = new BlockPos(fillStart.getX(), world.getMinBuildHeight(), fillStart.getZ());
+            }
+            BlockPos pos = fillStart;
+            while (pos.getY() <= below1.getY()) {
+                world.setBlock(pos, chosen, 3);
+                pos = pos.above();
+            }
+        } else {
+            world.setBlock(below1, chosen, 3);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            BlockPos up = surfacePos.above(i);
+            BlockState blockStateUp = world.getBlockState(up);
+            if (!blockStateUp.isAir() && !blockStateUp.is(BlockTags.LOGS) && !blockStateUp.is(BlockTags.FENCES)) {
+                world.setBlock(up, Blocks.AIR.defaultBlockState(), 3);
+            } else {
+                break;
+            }
+        }
+
+        BlockPos belowPos1 = surfacePos.below(2);
+        BlockState belowState1 = world.getBlockState(belowPos1);
+        if (belowState1.is(Blocks.GRASS_BLOCK)) {
+            world.setBlock(belowPos1, Blocks.DIRT.defaultBlockState(), 3);
+        }
+    }
+
+    private static boolean legacyPlaceAllowed(Block block) {
+        return !(RoadFeatureCompat.dontPlaceHere(block)
+                || block.defaultBlockState().is(BlockTags.LEAVES)
+                || block.defaultBlockState().is(BlockTags.LOGS)
+                || block.defaultBlockState().is(BlockTags.UNDERWATER_BONEMEALS)
+                || block.defaultBlockState().is(BlockTags.WOODEN_FENCES)
+                || block.defaultBlockState().is(BlockTags.PLANKS)
+        );
+    }
+}
@@ -0,0 +1,104 @@
+package net.shiroha233.roadweaver.features.placement;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 道路高度平均的采样次数与分配量基准：逐段重采样（改写前）对比滑动窗口。
+ * 高度查询以计数函数代替，只比较两种做法本身的开销。不属于单元测试，手动运行 main。
+ */
+public final class SlidingHeightWindowBenchmark {
+    private static final int ROAD_LENGTH = 4096;
+    private static final int RADIUS = 8;
+    private static final int ROUNDS = 200;
+
+    private static long samples;
+
+    private SlidingHeightWindowBenchmark() {}
+
+    public static void main(String[] args) {
+        int[] heights = new int[ROAD_LENGTH];
+        Random rnd = new Random(7);
+        int y = 80;
+        for (int i = 0; i < heights.length; i++) {
+            y += rnd.nextInt(5) - 2;
+            heights[i] = y;
+        }
+
+        // 预热
+        for (int i = 0; i < 20; i++) {
+            naive(heights);
+            sliding(heights);
+        }
+        long check = 0;
+
+        samples = 0;
+        long bytes0 = allocatedBytes();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) check += naive(heights);
+        long naiveNs = System.nanoTime() - t0;
+        long naiveBytes = allocatedBytes() - bytes0;
+        long naiveSamples = samples;
+
+        samples = 0;
+        bytes0 = allocatedBytes();
+        t0 = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) check -= sliding(heights);
+        long slidingNs = System.nanoTime() - t0;
+        long slidingBytes = allocatedBytes() - bytes0;
+        long slidingSamples = samples;
+
+        if (check != 0) throw new IllegalStateException("averages differ");
+        double segments = (double) ROAD_LENGTH * ROUNDS;
+        System.out.printf("road %d segments, radius %d, %d rounds%n", ROAD_LENGTH, RADIUS, ROUNDS);
+        System.out.printf("per-segment resample: %6.2f samples/segment, %8.1f bytes/segment, %6.1f ns/segment%n",
+                naiveSamples / segments, naiveBytes / segments, naiveNs / segments);
+        System.out.printf("sliding window:       %6.2f samples/segment, %8.1f bytes/segment, %6.1f ns/segment%n",
+                slidingSamples / segments, slidingBytes / segments, slidingNs / segments);
+    }
+
+    private static int sample(int[] heights, int i) {
+        samples++;
+        return heights[i];
+    }
+
+    // 改写前：每段新建装箱列表，重采样窗口并再取一次中心高度
+    private static long naive(int[] heights) {
+        long acc = 0;
+        for (int i = 0; i < heights.length; i++) {
+            List<Integer> window = new ArrayList<>();
+            for (int j = i - RADIUS; j <= i + RADIUS; j++) {
+                if (j >= 0 && j < heights.length) window.add(sample(heights, j));
+            }
+            int average = (int) Math.round(window.stream().mapToInt(Integer::intValue).average().orElse(0));
+            int center = sample(heights, i);
+            acc += average * 31L + center;
+        }
+        return acc;
+    }
+
+    private static long sliding(int[] heights) {
+        long acc = 0;
+        SlidingHeightWindow window = new SlidingHeightWindow(RADIUS);
+        int lastIndex = heights.length - 1;
+        window.reset(0);
+        for (int i = 0; i < heights.length; i++) {
+            int hi = Math.min(lastIndex, i + RADIUS);
+            while (window.endIndex() <= hi) window.push(sample(heights, window.endIndex()));
+            int lo = Math.max(0, i - RADIUS);
+            while (window.firstIndex() < lo) window.pop();
+            acc += window.average() * 31L + window.get(i);
+        }
+        return acc;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sun) {
+            return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+}
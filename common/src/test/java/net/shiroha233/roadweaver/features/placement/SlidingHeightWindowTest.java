@@ -0,0 +1,106 @@
+package net.shiroha233.roadweaver.features.placement;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按 RoadFeature 的推进方式驱动窗口，与改写前逐段重采样 [i - r, i + r] 的平均值逐段比较，
+ * 覆盖道路两端（窗口被截断）、短于窗口的道路与任意区块区间。
+ */
+class SlidingHeightWindowTest {
+
+    @Test
+    void matchesNaiveAverageOverWholeRoads() {
+        Random rnd = new Random(3);
+        for (int radius = 0; radius <= 12; radius++) {
+            for (int n : new int[]{1, 2, radius, radius + 1, 2 * radius + 1, 2 * radius + 2, 37, 300}) {
+                if (n <= 0) continue;
+                int[] heights = randomHeights(rnd, n);
+                check(heights, radius, 0, n);
+            }
+        }
+    }
+
+    @Test
+    void matchesNaiveAverageOverRandomSpans() {
+        Random rnd = new Random(11);
+        for (int round = 0; round < 2000; round++) {
+            int radius = rnd.nextInt(16);
+            int n = 1 + rnd.nextInt(400);
+            int[] heights = randomHeights(rnd, n);
+            int from = rnd.nextInt(n);
+            int to = from + 1 + rnd.nextInt(n - from);
+            // 一部分区间贴住道路首尾
+            if (round % 5 == 0) from = 0;
+            if (round % 7 == 0) to = n;
+            check(heights, radius, from, to);
+        }
+    }
+
+    @Test
+    void reusedAcrossSpans() {
+        Random rnd = new Random(5);
+        SlidingHeightWindow window = new SlidingHeightWindow(8);
+        for (int round = 0; round < 200; round++) {
+            int[] heights = randomHeights(rnd, 1 + rnd.nextInt(120));
+            int from = rnd.nextInt(heights.length);
+            run(window, heights, 8, from, heights.length, new int[1]);
+        }
+    }
+
+    private static void check(int[] heights, int radius, int from, int to) {
+        int[] samples = new int[1];
+        run(new SlidingHeightWindow(radius), heights, radius, from, to, samples);
+        // 每个中心点最多采样一次：区间加两侧各 r 个
+        int lo = Math.max(0, from - radius);
+        int hi = Math.min(heights.length - 1, to - 1 + radius);
+        assertEquals(hi - lo + 1, samples[0], "samples, r " + radius + ", n " + heights.length);
+    }
+
+    // 与 RoadFeature.place 中无计划分支的窗口推进一致
+    private static void run(SlidingHeightWindow window, int[] heights, int radius, int from, int to, int[] samples) {
+        int lastIndex = heights.length - 1;
+        window.reset(Math.max(0, from - radius));
+        for (int i = from; i < to; i++) {
+            int hi = Math.min(lastIndex, i + radius);
+            while (window.endIndex() <= hi) {
+                window.push(heights[window.endIndex()]);
+                samples[0]++;
+            }
+            int lo = Math.max(0, i - radius);
+            while (window.firstIndex() < lo) window.pop();
+
+            String at = "i " + i + ", r " + radius + ", n " + heights.length + ", span " + from + ".." + to;
+            assertTrue(!window.isEmpty(), at);
+            assertEquals(naiveAverage(heights, radius, i), window.average(), at);
+            assertEquals(heights[i], window.get(i), at);
+        }
+    }
+
+    // 改写前的实现：每段新建列表并重采样整个窗口
+    private static int naiveAverage(int[] heights, int radius, int i) {
+        List<Integer> window = new ArrayList<>();
+        for (int j = i - radius; j <= i + radius; j++) {
+            if (j >= 0 && j < heights.length) window.add(heights[j]);
+        }
+        return (int) Math.round(window.stream().mapToInt(Integer::intValue).average().orElse(0));
+    }
+
+    private static int[] randomHeights(Random rnd, int n) {
+        int[] out = new int[n];
+        int y = 40 + rnd.nextInt(120);
+        for (int i = 0; i < n; i++) {
+            y += rnd.nextInt(9) - 4;
+            // 偶尔出现悬崖，让 .5 的舍入边界也被覆盖
+            if (rnd.nextInt(20) == 0) y += rnd.nextInt(61) - 30;
+            out[i] = Math.max(-64, Math.min(319, y));
+        }
+        return out;
+    }
+}
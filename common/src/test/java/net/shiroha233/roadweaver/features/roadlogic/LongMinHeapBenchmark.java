@@ -0,0 +1,112 @@
+package net.shiroha233.roadweaver.features.roadlogic;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * 开放集微基准：在随机权重的网格上跑 Dijkstra（与 A* 开放集的插入/降键/弹出模式相同），
+ * 比较 {@link LongMinHeap} 与「PriorityQueue + 过期条目」的耗时与入队次数。
+ * 不属于单元测试，手动运行 main。
+ */
+public final class LongMinHeapBenchmark {
+    private static final int SIDE = 512;
+    private static final int ROUNDS = 10;
+
+    private LongMinHeapBenchmark() {}
+
+    public static void main(String[] args) {
+        // 每个格点四个方向的边权，使同一节点会被多次改进（降键）
+        int[] weights = new int[SIDE * SIDE * 4];
+        Random rnd = new Random(42);
+        for (int i = 0; i < weights.length; i++) weights[i] = 1 + rnd.nextInt(16);
+
+        // 预热
+        for (int i = 0; i < 3; i++) {
+            runIndexed(weights);
+            runPriorityQueue(weights);
+        }
+        long indexedNs = 0, queueNs = 0, indexedOffers = 0, queueOffers = 0, check = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long t0 = System.nanoTime();
+            long[] a = runIndexed(weights);
+            long t1 = System.nanoTime();
+            long[] b = runPriorityQueue(weights);
+            long t2 = System.nanoTime();
+            if (a[0] != b[0]) throw new IllegalStateException("distance mismatch " + a[0] + " vs " + b[0]);
+            indexedNs += t1 - t0;
+            queueNs += t2 - t1;
+            indexedOffers += a[1];
+            queueOffers += b[1];
+            check += a[0];
+        }
+        System.out.printf("grid %dx%d, %d rounds (checksum %d)%n", SIDE, SIDE, ROUNDS, check);
+        System.out.printf("LongMinHeap:            %8.1f ms/round, %,d entries/round%n", indexedNs / 1e6 / ROUNDS, indexedOffers / ROUNDS);
+        System.out.printf("PriorityQueue (stale):  %8.1f ms/round, %,d entries/round%n", queueNs / 1e6 / ROUNDS, queueOffers / ROUNDS);
+    }
+
+    // 返回 {终点距离, 实际入堆条目数}
+    private static long[] runIndexed(int[] weights) {
+        double[] dist = new double[SIDE * SIDE];
+        java.util.Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] closed = new boolean[SIDE * SIDE];
+        LongMinHeap open = new LongMinHeap(1024);
+        long entries = 0;
+        dist[0] = 0;
+        open.offer(0, 0);
+        entries++;
+        while (!open.isEmpty()) {
+            int cur = (int) open.poll();
+            closed[cur] = true;
+            int x = cur % SIDE, z = cur / SIDE;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                int nz = z + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                if (nx < 0 || nz < 0 || nx >= SIDE || nz >= SIDE) continue;
+                int n = nz * SIDE + nx;
+                if (closed[n]) continue;
+                double nd = dist[cur] + weights[cur * 4 + d];
+                if (nd < dist[n]) {
+                    boolean fresh = !open.contains(n);
+                    dist[n] = nd;
+                    open.offer(n, nd);
+                    if (fresh) entries++;
+                }
+            }
+        }
+        return new long[]{(long) dist[dist.length - 1], entries};
+    }
+
+    private record Node(int index, double priority) {}
+
+    private static long[] runPriorityQueue(int[] weights) {
+        double[] dist = new double[SIDE * SIDE];
+        java.util.Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] closed = new boolean[SIDE * SIDE];
+        PriorityQueue<Node> open = new PriorityQueue<>((a, b) -> Double.compare(a.priority, b.priority));
+        long entries = 0;
+        dist[0] = 0;
+        open.add(new Node(0, 0));
+        entries++;
+        while (!open.isEmpty()) {
+            Node node = open.poll();
+            int cur = node.index;
+            if (closed[cur]) continue;
+            closed[cur] = true;
+            int x = cur % SIDE, z = cur / SIDE;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                int nz = z + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                if (nx < 0 || nz < 0 || nx >= SIDE || nz >= SIDE) continue;
+                int n = nz * SIDE + nx;
+                if (closed[n]) continue;
+                double nd = dist[cur] + weights[cur * 4 + d];
+                if (nd < dist[n]) {
+                    dist[n] = nd;
+                    open.add(new Node(n, nd));
+                    entries++;
+                }
+            }
+        }
+        return new long[]{(long) dist[dist.length - 1], entries};
+    }
+}
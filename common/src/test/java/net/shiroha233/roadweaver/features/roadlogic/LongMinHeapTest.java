@@ -0,0 +1,131 @@
+package net.shiroha233.roadweaver.features.roadlogic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以 {@link PriorityQueue}（过期条目惰性跳过，即改写前的开放集做法）为参照，
+ * 随机插入、降键、弹出后两者的弹出序列必须一致。
+ */
+class LongMinHeapTest {
+
+    @Test
+    void matchesPriorityQueueUnderRandomOperations() {
+        for (long seed = 1; seed <= 200; seed++) {
+            Random rnd = new Random(seed);
+            int keySpace = 1 + rnd.nextInt(1000);
+            LongMinHeap heap = new LongMinHeap(1 + rnd.nextInt(32));
+            ReferenceQueue ref = new ReferenceQueue();
+            List<Long> heapPops = new ArrayList<>();
+            List<Long> refPops = new ArrayList<>();
+
+            for (int op = 0; op < 5000; op++) {
+                int r = rnd.nextInt(10);
+                if (r < 6) {
+                    long key = rnd.nextInt(keySpace);
+                    double p = priority(rnd, key);
+                    assertEquals(ref.offer(key, p), heap.offer(key, p), "offer, seed " + seed);
+                } else if (r < 8 && ref.size() > 0) {
+                    // 对已在堆中的键降键
+                    long key = ref.anyKey(rnd);
+                    double p = ref.priorityOf(key) - 1 - rnd.nextInt(64);
+                    p = Math.floor(p) + key / 2048.0;
+                    assertEquals(ref.offer(key, p), heap.offer(key, p), "decrease-key, seed " + seed);
+                } else if (ref.size() > 0) {
+                    assertEquals(ref.peekPriority(), heap.peekPriority(), "peek, seed " + seed);
+                    heapPops.add(heap.poll());
+                    refPops.add(ref.poll());
+                }
+                assertEquals(ref.size(), heap.size(), "size, seed " + seed);
+                assertEquals(ref.size() == 0, heap.isEmpty(), "isEmpty, seed " + seed);
+            }
+            while (ref.size() > 0) {
+                heapPops.add(heap.poll());
+                refPops.add(ref.poll());
+            }
+            assertTrue(heap.isEmpty(), "drained, seed " + seed);
+            assertEquals(refPops, heapPops, "pop order, seed " + seed);
+        }
+    }
+
+    @Test
+    void clearForgetsKeys() {
+        LongMinHeap heap = new LongMinHeap(4);
+        for (long k = 0; k < 100; k++) heap.offer(k, 100 - k);
+        assertTrue(heap.contains(42L));
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(42L));
+        assertTrue(heap.offer(42L, 5.0));
+        assertEquals(42L, heap.poll());
+    }
+
+    /**
+     * 优先级两两不同（整数部分随机，小数部分由键决定），
+     * 使弹出顺序与堆实现的并列处理方式无关。
+     */
+    private static double priority(Random rnd, long key) {
+        return rnd.nextInt(1 << 16) + key / 2048.0;
+    }
+
+    private static final class ReferenceQueue {
+        private record Entry(long key, double priority) {}
+
+        private final PriorityQueue<Entry> queue = new PriorityQueue<>((a, b) -> Double.compare(a.priority, b.priority));
+        private final Map<Long, Double> live = new HashMap<>();
+        private final List<Long> keys = new ArrayList<>();
+
+        boolean offer(long key, double priority) {
+            Double old = live.get(key);
+            if (old != null && priority >= old) return false;
+            if (old == null) keys.add(key);
+            live.put(key, priority);
+            queue.add(new Entry(key, priority));
+            return true;
+        }
+
+        long poll() {
+            skipStale();
+            Entry e = queue.poll();
+            live.remove(e.key);
+            keys.remove(Long.valueOf(e.key));
+            return e.key;
+        }
+
+        double peekPriority() {
+            skipStale();
+            return queue.peek().priority;
+        }
+
+        int size() {
+            return live.size();
+        }
+
+        double priorityOf(long key) {
+            return live.get(key);
+        }
+
+        long anyKey(Random rnd) {
+            return keys.get(rnd.nextInt(keys.size()));
+        }
+
+        private void skipStale() {
+            while (true) {
+                Entry e = queue.peek();
+                Double p = live.get(e.key);
+                if (p != null && p == e.priority) return;
+                queue.poll();
+            }
+        }
+    }
+}
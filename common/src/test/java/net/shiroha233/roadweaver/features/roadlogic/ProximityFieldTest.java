@@ -0,0 +1,95 @@
+package net.shiroha233.roadweaver.features.roadlogic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 前缀和邻近判定与逐点扫描 (2r+1)² 邻域（不含自身）的结果必须一致，
+ * 覆盖负坐标、场块边界和大于场块边长的半径。
+ */
+class ProximityFieldTest {
+    // 随机掩码覆盖 [-ORIGIN, SPAN - ORIGIN) 的网格点，跨越多个场块（含负坐标）
+    private static final int SPAN = 160;
+    private static final int ORIGIN = 80;
+
+    @Test
+    void matchesBruteForceOnRandomMasks() {
+        int[] radii = {1, 2, 3, 5, 8, 15, 16, 17, 24, 40};
+        for (long seed = 1; seed <= 12; seed++) {
+            Random rnd = new Random(seed);
+            // 稀疏与稠密掩码都要覆盖
+            double density = seed % 3 == 0 ? 0.002 : seed % 3 == 1 ? 0.02 : 0.3;
+            boolean[] mask = new boolean[SPAN * SPAN];
+            for (int i = 0; i < mask.length; i++) mask[i] = rnd.nextDouble() < density;
+            ProximityField.Indicator indicator = (gx, gz) -> at(mask, gx, gz);
+
+            for (int r : radii) {
+                ProximityField field = new ProximityField(r, indicator);
+                int lo = -ORIGIN + r;
+                int hi = SPAN - ORIGIN - r;
+                for (int gz = lo; gz < hi; gz++) {
+                    for (int gx = lo; gx < hi; gx++) {
+                        boolean expected = bruteForce(mask, r, gx, gz);
+                        int x = gx, z = gz, radius = r;
+                        long s = seed;
+                        assertEquals(expected, field.anyNear(gx, gz),
+                                () -> "seed " + s + ", r " + radius + ", at " + x + "," + z);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void tileEdgesAndCentreExclusion() {
+        int size = ProximityField.SIZE;
+        for (int r : new int[]{1, 4, size - 1, size, size + 1, 3 * size}) {
+            // 单点：仅自身不算邻近，邻域内任意位置（含跨场块、跨负坐标）都算
+            for (int px : new int[]{-size - 1, -size, -1, 0, size - 1, size}) {
+                int pz = -px;
+                ProximityField field = new ProximityField(r, (gx, gz) -> gx == px && gz == pz);
+                assertFalse(field.anyNear(px, pz), "centre excluded, r " + r);
+                for (int d = -r - 1; d <= r + 1; d++) {
+                    boolean inside = Math.abs(d) <= r && d != 0;
+                    assertEquals(inside, field.anyNear(px + d, pz), "dx " + d + ", r " + r + ", point " + px);
+                    assertEquals(inside, field.anyNear(px, pz + d), "dz " + d + ", r " + r + ", point " + px);
+                    assertEquals(inside, field.anyNear(px + d, pz - d), "diagonal " + d + ", r " + r + ", point " + px);
+                }
+            }
+        }
+    }
+
+    @Test
+    void clearRebuildsTiles() {
+        boolean[] flag = {false};
+        ProximityField field = new ProximityField(2, (gx, gz) -> flag[0] && gx == 1 && gz == 0);
+        assertFalse(field.anyNear(0, 0));
+        flag[0] = true;
+        // 场块已缓存，指示值变化在 clear 前不可见
+        assertFalse(field.anyNear(0, 0));
+        field.clear();
+        assertTrue(field.anyNear(0, 0));
+    }
+
+    private static boolean bruteForce(boolean[] mask, int r, int gx, int gz) {
+        for (int dz = -r; dz <= r; dz++) {
+            for (int dx = -r; dx <= r; dx++) {
+                if (dx == 0 && dz == 0) continue;
+                if (at(mask, gx + dx, gz + dz)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean at(boolean[] mask, int gx, int gz) {
+        int x = gx + ORIGIN;
+        int z = gz + ORIGIN;
+        if (x < 0 || z < 0 || x >= SPAN || z >= SPAN) return false;
+        return mask[z * SPAN + x];
+    }
+}
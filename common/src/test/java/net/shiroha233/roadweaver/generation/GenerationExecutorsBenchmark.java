@@ -0,0 +1,98 @@
+package net.shiroha233.roadweaver.generation;
+
+import net.shiroha233.roadweaver.config.ModConfig;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 生成线程池吞吐基准：三种后端分别运行同一批合成「道路任务」，输出每分钟完成数。
+ * 每个任务先做一段网格最短路（代表寻路的 CPU 部分），再阻塞一段时间（代表等待区块/主线程）；
+ * 与 RoadGenerationService 一样以信号量限制同时运行的任务数。不属于单元测试，手动运行 main：
+ * <pre>main [threads] [concurrency] [tasks] [gridSide] [blockMillis]</pre>
+ */
+public final class GenerationExecutorsBenchmark {
+    private GenerationExecutorsBenchmark() {}
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = arg(args, 0, 3);
+        int concurrency = arg(args, 1, 3);
+        int tasks = arg(args, 2, 300);
+        int side = arg(args, 3, 160);
+        int blockMillis = arg(args, 4, 5);
+
+        System.out.printf("java %s, %d cpus, threads %d, concurrency %d, %d tasks, grid %d, block %d ms%n",
+                Runtime.version(), Runtime.getRuntime().availableProcessors(), threads, concurrency, tasks, side, blockMillis);
+        // 预热一轮，结果丢弃
+        run(ModConfig.ExecutorMode.FORK_JOIN, threads, concurrency, tasks / 3, side, blockMillis);
+        for (ModConfig.ExecutorMode mode : ModConfig.ExecutorMode.values()) {
+            double perMinute = run(mode, threads, concurrency, tasks, side, blockMillis);
+            System.out.printf("%-9s backend %-14s %8.0f tasks/min%n", mode, GenerationExecutors.backend(), perMinute);
+        }
+    }
+
+    private static double run(ModConfig.ExecutorMode mode, int threads, int concurrency, int tasks, int side, int blockMillis)
+            throws InterruptedException {
+        ExecutorService executor = GenerationExecutors.create(mode, threads);
+        Semaphore running = new Semaphore(concurrency);
+        AtomicLong checksum = new AtomicLong();
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            running.acquire();
+            long seed = i;
+            executor.execute(() -> {
+                try {
+                    checksum.addAndGet(shortestPath(side, seed));
+                    Thread.sleep(blockMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.release();
+                }
+            });
+        }
+        running.acquire(concurrency);
+        double minutes = (System.nanoTime() - start) / 60e9;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        if (checksum.get() == 42) System.out.print("");
+        return tasks / minutes;
+    }
+
+    private static long shortestPath(int side, long seed) {
+        Random rnd = new Random(seed);
+        int[] cost = new int[side * side];
+        for (int i = 0; i < cost.length; i++) cost[i] = 1 + rnd.nextInt(20);
+        long[] dist = new long[cost.length];
+        java.util.Arrays.fill(dist, Long.MAX_VALUE);
+        PriorityQueue<long[]> open = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        dist[0] = 0;
+        open.add(new long[]{0, 0});
+        while (!open.isEmpty()) {
+            long[] e = open.poll();
+            int cur = (int) e[1];
+            if (e[0] > dist[cur]) continue;
+            int x = cur % side, z = cur / side;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+                int nz = z + (d == 2 ? 1 : d == 3 ? -1 : 0);
+                if (nx < 0 || nz < 0 || nx >= side || nz >= side) continue;
+                int n = nz * side + nx;
+                long nd = dist[cur] + cost[n];
+                if (nd < dist[n]) {
+                    dist[n] = nd;
+                    open.add(new long[]{nd, n});
+                }
+            }
+        }
+        return dist[dist.length - 1];
+    }
+
+    private static int arg(String[] args, int i, int def) {
+        return args.length > i ? Integer.parseInt(args[i]) : def;
+    }
+}
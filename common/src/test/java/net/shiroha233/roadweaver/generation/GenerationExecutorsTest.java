@@ -0,0 +1,99 @@
+package net.shiroha233.roadweaver.generation;
+
+import net.shiroha233.roadweaver.config.ModConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 三种线程池后端的创建：虚拟线程经反射获取，运行时不支持（Java 17）时必须干净地退回 ForkJoinPool。
+ */
+class GenerationExecutorsTest {
+
+    @Test
+    void virtualFallsBackToForkJoinWithoutVirtualThreads() throws Exception {
+        ExecutorService executor = GenerationExecutors.create(ModConfig.ExecutorMode.VIRTUAL, 3);
+        try {
+            if (hasVirtualThreads()) {
+                assertEquals("virtual", GenerationExecutors.backend());
+                assertTrue(runOn(executor).isVirtual, "task should run on a virtual thread");
+            } else {
+                assertEquals("fork-join(3)", GenerationExecutors.backend());
+                assertTrue(executor instanceof ForkJoinPool);
+                assertEquals(3, ((ForkJoinPool) executor).getParallelism());
+                assertPlatformWorker(runOn(executor));
+            }
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    void fixedUsesConfiguredPlatformThreads() throws Exception {
+        ExecutorService executor = GenerationExecutors.create(ModConfig.ExecutorMode.FIXED, 2);
+        try {
+            assertEquals("fixed(2)", GenerationExecutors.backend());
+            assertFalse(executor instanceof ForkJoinPool);
+            assertPlatformWorker(runOn(executor));
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    void forkJoinClampsThreadCount() throws Exception {
+        ExecutorService executor = GenerationExecutors.create(ModConfig.ExecutorMode.FORK_JOIN, 0);
+        try {
+            assertEquals("fork-join(1)", GenerationExecutors.backend());
+            assertEquals(1, ((ForkJoinPool) executor).getParallelism());
+            assertPlatformWorker(runOn(executor));
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    private static boolean hasVirtualThreads() {
+        try {
+            java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static void assertPlatformWorker(ThreadInfo info) {
+        assertTrue(info.name.startsWith("RoadWeaver-Gen-"), info.name);
+        assertTrue(info.daemon, "generation threads must be daemons");
+        assertEquals(Thread.NORM_PRIORITY - 2, info.priority);
+        assertEquals(GenerationExecutors.class.getClassLoader(), info.contextClassLoader);
+    }
+
+    private static ThreadInfo runOn(ExecutorService executor) throws Exception {
+        return executor.submit(() -> {
+            Thread t = Thread.currentThread();
+            return new ThreadInfo(t.getName(), t.isDaemon(), t.getPriority(), t.getContextClassLoader(), isVirtual(t));
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    // Thread.isVirtual 同样只在 Java 21+ 存在
+    private static boolean isVirtual(Thread t) {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(t);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    private record ThreadInfo(String name, boolean daemon, int priority, ClassLoader contextClassLoader, boolean isVirtual) {}
+}
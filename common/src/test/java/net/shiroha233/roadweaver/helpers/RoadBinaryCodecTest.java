@@ -0,0 +1,161 @@
+package net.shiroha233.roadweaver.helpers;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.Dynamic;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.SlabBlock;
+import net.minecraft.world.level.block.StairBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.block.state.properties.SlabType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二进制编码与原 Codec/NBT 形式逐字段一致：调色板（含带属性的方块状态与跨道路共享）、
+ * 负坐标与大跨度差分、模板段与显式段、桥隧区间；并记录相对 NBT 列表的体积比。
+ */
+class RoadBinaryCodecTest {
+
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    void decodeMatchesCodecNbtForm() throws IOException {
+        List<Records.RoadData> roads = fixedRoads();
+
+        byte[] bin = RoadBinaryCodec.encode(roads);
+        List<Records.RoadData> fromBin = RoadBinaryCodec.decode(bin);
+
+        Tag nbt = Codec.list(Records.RoadData.CODEC).encodeStart(NbtOps.INSTANCE, roads)
+                .getOrThrow(false, msg -> {});
+        List<Records.RoadData> fromNbt = Codec.list(Records.RoadData.CODEC).parse(new Dynamic<>(NbtOps.INSTANCE, nbt))
+                .getOrThrow(false, msg -> {});
+
+        assertEquals(roads.size(), fromNbt.size());
+        assertEquals(fromNbt.size(), fromBin.size());
+        for (int r = 0; r < roads.size(); r++) {
+            assertRoadEquals(roads.get(r), fromNbt.get(r), "nbt road " + r);
+            assertRoadEquals(fromNbt.get(r), fromBin.get(r), "binary road " + r);
+        }
+
+        // 体积比：与分片原先保存的 NBT 列表（未压缩）相比
+        CompoundTag root = new CompoundTag();
+        root.put("roads", nbt);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            NbtIo.write(root, out);
+        }
+        int nbtSize = bytes.size();
+        System.out.printf("RoadBinaryCodec: %d bytes vs NBT list %d bytes (ratio %.3f)%n",
+                bin.length, nbtSize, (double) bin.length / nbtSize);
+        assertTrue(bin.length * 2 < nbtSize, "binary " + bin.length + " bytes, nbt " + nbtSize + " bytes");
+    }
+
+    @Test
+    void emptyListRoundTrips() {
+        assertEquals(0, RoadBinaryCodec.decode(RoadBinaryCodec.encode(List.of())).size());
+    }
+
+    private static void assertRoadEquals(Records.RoadData expected, Records.RoadData actual, String label) {
+        assertEquals(expected.width(), actual.width(), label + " width");
+        assertEquals(expected.roadType(), actual.roadType(), label + " roadType");
+        assertEquals(expected.materials().size(), actual.materials().size(), label + " materials");
+        for (int i = 0; i < expected.materials().size(); i++) {
+            assertSame(expected.materials().get(i), actual.materials().get(i), label + " material " + i);
+        }
+        assertEquals(expected.roadSegmentList().size(), actual.roadSegmentList().size(), label + " segments");
+        for (int i = 0; i < expected.roadSegmentList().size(); i++) {
+            Records.RoadSegmentPlacement e = expected.roadSegmentList().get(i);
+            Records.RoadSegmentPlacement a = actual.roadSegmentList().get(i);
+            String seg = label + " segment " + i;
+            assertEquals(e.middlePos(), a.middlePos(), seg + " middle");
+            assertEquals(e.direction(), a.direction(), seg + " direction");
+            assertEquals(e.radius(), a.radius(), seg + " radius");
+            assertArrayEquals(e.mask(), a.mask(), seg + " mask");
+            assertEquals(e.positions(), a.positions(), seg + " positions");
+            // 段按 mask 内容比较，解码出的新数组也应相等
+            assertEquals(e, a, seg);
+            assertEquals(e.hashCode(), a.hashCode(), seg + " hashCode");
+        }
+        assertEquals(expected.spans(), actual.spans(), label + " spans");
+    }
+
+    // 三条道路：负坐标、世界边缘附近的大跨度、显式（y 不为 0）段，材质调色板部分共享
+    private static List<Records.RoadData> fixedRoads() {
+        BlockState slab = Blocks.SMOOTH_STONE_SLAB.defaultBlockState().setValue(SlabBlock.TYPE, SlabType.TOP);
+        BlockState stairs = Blocks.STONE_BRICK_STAIRS.defaultBlockState().setValue(StairBlock.FACING, Direction.WEST);
+        List<BlockState> shared = List.of(Blocks.STONE_BRICKS.defaultBlockState(), slab);
+
+        List<Records.RoadData> roads = new ArrayList<>();
+        roads.add(new Records.RoadData(3, 0, shared,
+                templateSegments(new Random(1), -1200, 70, -3400, 80, 2),
+                List.of(new Records.RoadSpan(new BlockPos(-1100, 64, -3350), new BlockPos(-1080, 64, -3340), Records.SpanType.BRIDGE))));
+        roads.add(new Records.RoadData(5, 1, List.of(stairs, Blocks.POLISHED_ANDESITE.defaultBlockState(), slab),
+                templateSegments(new Random(2), 29_999_000, -60, -29_999_000, 60, 3),
+                List.of(
+                        new Records.RoadSpan(new BlockPos(29_999_010, -58, -29_998_990), new BlockPos(29_999_030, -40, -29_998_970), Records.SpanType.TUNNEL),
+                        new Records.RoadSpan(new BlockPos(-5, 0, 5), new BlockPos(5, 0, -5), Records.SpanType.BRIDGE))));
+        roads.add(new Records.RoadData(1, -1, List.of(Blocks.GRAVEL.defaultBlockState()),
+                explicitSegments(new Random(3), -17, 100, 23, 20),
+                List.of()));
+        return roads;
+    }
+
+    // 沿随机方向前进的模板段，部分宽度方块缺失（模拟跨段去重）
+    private static List<Records.RoadSegmentPlacement> templateSegments(Random rnd, int x, int y, int z, int count, int radius) {
+        List<Records.RoadSegmentPlacement> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int dir = WidthTemplate.X_AXIS + rnd.nextInt(4);
+            x += rnd.nextInt(9) - 4;
+            y += rnd.nextInt(5) - 2;
+            z += rnd.nextInt(9) - 4;
+            BlockPos middle = new BlockPos(x, y, z);
+            int[] offsets = WidthTemplate.offsets(dir, radius);
+            List<BlockPos> positions = new ArrayList<>();
+            for (int k = 0; k < offsets.length / 2; k++) {
+                if (rnd.nextInt(4) != 0) positions.add(new BlockPos(x + offsets[k * 2], 0, z + offsets[k * 2 + 1]));
+            }
+            out.add(WidthTemplate.compact(middle, positions));
+        }
+        return out;
+    }
+
+    // 旧数据中的显式坐标段（y 不为 0，无法套用模板）
+    private static List<Records.RoadSegmentPlacement> explicitSegments(Random rnd, int x, int y, int z, int count) {
+        List<Records.RoadSegmentPlacement> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            x -= 1 + rnd.nextInt(4);
+            z -= 1 + rnd.nextInt(4);
+            BlockPos middle = new BlockPos(x, y, z);
+            List<BlockPos> positions = new ArrayList<>();
+            for (int k = -1; k <= 1; k++) positions.add(new BlockPos(x + k, y - rnd.nextInt(3), z - k));
+            Records.RoadSegmentPlacement seg = WidthTemplate.compact(middle, positions);
+            assertEquals(WidthTemplate.EXPLICIT, seg.direction());
+            out.add(seg);
+        }
+        return out;
+    }
+}
@@ -168,6 +168,17 @@ public class ConfigScreenFactoryImpl {
                         .build()
         );
 
+        genPerformance.addEntry(
+                eb.startEnumSelector(
+                                Component.translatable("config.roadweaver.executor_mode"),
+                                ModConfig.ExecutorMode.class,
+                                conf.executorMode())
+                        .setTooltip(Component.translatable("config.roadweaver.executor_mode.tooltip"))
+                        .setEnumNameProvider(v -> Component.translatable("config.roadweaver.executor_mode.option." + v.name().toLowerCase(Locale.ROOT)))
+                        .setSaveConsumer(conf::setExecutorMode)
+                        .build()
+        );
+
         genPerformance.addEntry(
                 eb.startIntField(Component.translatable("config.roadweaver.a_star_step"), conf.aStarStep())
                         .setTooltip(Component.translatable("config.roadweaver.a_star_step.tooltip"))
@@ -184,6 +195,52 @@ public class ConfigScreenFactoryImpl {
                         .build()
         );
 
+        genPerformance.addEntry(
+                eb.startBooleanToggle(Component.translatable("config.roadweaver.adaptive_throttle"), conf.adaptiveThrottle())
+                        .setTooltip(Component.translatable("config.roadweaver.adaptive_throttle.tooltip"))
+                        .setSaveConsumer(conf::setAdaptiveThrottle)
+                        .build()
+        );
+
+        genPerformance.addEntry(
+                eb.startDoubleField(Component.translatable("config.roadweaver.target_mspt"), conf.targetMspt())
+                        .setTooltip(Component.translatable("config.roadweaver.target_mspt.tooltip"))
+                        .setMin(10.0).setMax(200.0)
+                        .setSaveConsumer(conf::setTargetMspt)
+                        .build()
+        );
+
+        genPerformance.addEntry(
+                eb.startBooleanToggle(Component.translatable("config.roadweaver.speculative_planning"), conf.speculativePlanning())
+                        .setTooltip(Component.translatable("config.roadweaver.speculative_planning.tooltip"))
+                        .setSaveConsumer(conf::setSpeculativePlanning)
+                        .build()
+        );
+
+        genPerformance.addEntry(
+                eb.startIntField(Component.translatable("config.roadweaver.speculative_ring_tiles"), conf.speculativeRingTiles())
+                        .setTooltip(Component.translatable("config.roadweaver.speculative_ring_tiles.tooltip"))
+                        .setMin(1).setMax(8)
+                        .setSaveConsumer(conf::setSpeculativeRingTiles)
+                        .build()
+        );
+
+        genPerformance.addEntry(
+                eb.startIntField(Component.translatable("config.roadweaver.pathfinding_timeout_seconds"), conf.pathfindingTimeoutSeconds())
+                        .setTooltip(Component.translatable("config.roadweaver.pathfinding_timeout_seconds.tooltip"))
+                        .setMin(1).setMax(600)
+                        .setSaveConsumer(conf::setPathfindingTimeoutSeconds)
+                        .build()
+        );
+
+        genPerformance.addEntry(
+                eb.startIntField(Component.translatable("config.roadweaver.terrain_cache_megabytes"), conf.terrainCacheMegabytes())
+                        .setTooltip(Component.translatable("config.roadweaver.terrain_cache_megabytes.tooltip"))
+                        .setMin(8).setMax(1024)
+                        .setSaveConsumer(conf::setTerrainCacheMegabytes)
+                        .build()
+        );
+
         return builder.build();
     }
 
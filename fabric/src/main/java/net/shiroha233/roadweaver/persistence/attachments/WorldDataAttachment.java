@@ -3,6 +3,7 @@ package net.shiroha233.roadweaver.persistence.attachments;
 import com.mojang.serialization.Codec;
 import net.shiroha233.roadweaver.RoadWeaver;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.ConnectionStore;
 import net.fabricmc.fabric.api.attachment.v1.AttachmentRegistry;
 import net.fabricmc.fabric.api.attachment.v1.AttachmentType;
 import net.minecraft.resources.ResourceLocation;
@@ -15,9 +16,10 @@ import java.util.List;
 public class WorldDataAttachment {
     private static final Logger LOGGER = LoggerFactory.getLogger(RoadWeaver.MOD_ID);
 
-    public static final AttachmentType<List<Records.StructureConnection>> CONNECTED_STRUCTURES = AttachmentRegistry.createPersistent(
+    // 磁盘格式仍为连接列表，加载后转为带索引的 ConnectionStore
+    public static final AttachmentType<ConnectionStore> CONNECTED_STRUCTURES = AttachmentRegistry.createPersistent(
             new ResourceLocation(RoadWeaver.MOD_ID, "connected_villages"),
-            Codec.list(Records.StructureConnection.CODEC)
+            Codec.list(Records.StructureConnection.CODEC).xmap(ConnectionStore::new, ConnectionStore::view)
     );
 
 
@@ -26,6 +28,7 @@ public class WorldDataAttachment {
             Records.StructureLocationData.CODEC
     );
 
+    // 旧版道路数据，仅用于迁移到 RoadShardStorage 区域分片
     public static final AttachmentType<List<Records.RoadData>> ROAD_DATA_LIST = AttachmentRegistry.createPersistent(
             new ResourceLocation(RoadWeaver.MOD_ID, "road_chunk_data_map"),
             Codec.list(Records.RoadData.CODEC)
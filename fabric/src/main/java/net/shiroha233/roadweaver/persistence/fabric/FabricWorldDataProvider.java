@@ -1,6 +1,7 @@
 package net.shiroha233.roadweaver.persistence.fabric;
 
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.ConnectionStore;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 import net.shiroha233.roadweaver.persistence.attachments.WorldDataAttachment;
 import net.fabricmc.fabric.api.attachment.v1.AttachmentTarget;
@@ -23,22 +24,21 @@ public class FabricWorldDataProvider extends WorldDataProvider {
     }
 
     @Override
-    public List<Records.StructureConnection> getStructureConnections(ServerLevel level) {
-        return ((AttachmentTarget) level).getAttachedOrCreate(WorldDataAttachment.CONNECTED_STRUCTURES, ArrayList::new);
+    protected ConnectionStore getConnectionStore(ServerLevel level) {
+        return ((AttachmentTarget) level).getAttachedOrCreate(WorldDataAttachment.CONNECTED_STRUCTURES, ConnectionStore::new);
     }
 
     @Override
-    public void setStructureConnections(ServerLevel level, List<Records.StructureConnection> connections) {
-        ((AttachmentTarget) level).setAttached(WorldDataAttachment.CONNECTED_STRUCTURES, connections);
+    protected void markConnectionsDirty(ServerLevel level) {
+        // 世界附件在保存时整体序列化，原地修改无需额外标记
     }
 
     @Override
-    public List<Records.RoadData> getRoadDataList(ServerLevel level) {
-        return ((AttachmentTarget) level).getAttachedOrCreate(WorldDataAttachment.ROAD_DATA_LIST, ArrayList::new);
-    }
-
-    @Override
-    public void setRoadDataList(ServerLevel level, List<Records.RoadData> roadDataList) {
-        ((AttachmentTarget) level).setAttached(WorldDataAttachment.ROAD_DATA_LIST, roadDataList);
+    protected List<Records.RoadData> drainLegacyRoadData(ServerLevel level) {
+        // 道路数据已改为区域分片存储，旧附件只在首次加载时迁移后移除
+        AttachmentTarget target = (AttachmentTarget) level;
+        if (!target.hasAttached(WorldDataAttachment.ROAD_DATA_LIST)) return List.of();
+        List<Records.RoadData> legacy = target.removeAttached(WorldDataAttachment.ROAD_DATA_LIST);
+        return legacy != null ? legacy : List.of();
     }
 }
@@ -1,7 +1,9 @@
 package net.shiroha233.roadweaver.planning.fabric;
 
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerWorldEvents;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.Level;
@@ -10,6 +12,7 @@ import net.shiroha233.roadweaver.generation.RoadGenerationService;
 import net.shiroha233.roadweaver.generation.InitialGenManager;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 import net.shiroha233.roadweaver.achievements.AchievementService;
+import net.shiroha233.roadweaver.command.RoadWeaverCommands;
 
 public final class ServerPlanningHooks {
     private ServerPlanningHooks() {}
@@ -51,5 +54,14 @@ public final class ServerPlanningHooks {
         ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
             RoadGenerationService.onServerStopping();
         });
+
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            RoadGenerationService.onServerStopped();
+        });
+
+        ServerWorldEvents.UNLOAD.register((server, level) -> RoadGenerationService.onLevelUnload(level));
+
+        CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
+                RoadWeaverCommands.register(dispatcher));
     }
 }
@@ -0,0 +1,24 @@
+package net.shiroha233.roadweaver.mixin;
+
+import net.minecraft.server.level.ServerLevel;
+import net.shiroha233.roadweaver.persistence.ConnectionJournal;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * 在维度数据保存前后为状态日志做检查点：保存前轮换日志，保存后（主存储写完）删除旧日志。
+ */
+@Mixin(ServerLevel.class)
+public abstract class ServerLevelMixin {
+    @Inject(method = "saveLevelData", at = @At("HEAD"))
+    private void roadweaver$beginJournalCheckpoint(CallbackInfo ci) {
+        ConnectionJournal.checkpointBegin((ServerLevel) (Object) this);
+    }
+
+    @Inject(method = "saveLevelData", at = @At("TAIL"))
+    private void roadweaver$endJournalCheckpoint(CallbackInfo ci) {
+        ConnectionJournal.checkpointEnd((ServerLevel) (Object) this);
+    }
+}
@@ -5,6 +5,8 @@ import com.mojang.serialization.DataResult;
 import com.mojang.serialization.Dynamic;
 import com.mojang.serialization.DynamicOps;
 import net.shiroha233.roadweaver.helpers.Records;
+import net.shiroha233.roadweaver.persistence.AsyncDataWriter;
+import net.shiroha233.roadweaver.persistence.ConnectionStore;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.NbtOps;
@@ -12,6 +14,7 @@ import net.minecraft.nbt.Tag;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.saveddata.SavedData;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -25,12 +28,13 @@ public class ForgeWorldDataProvider extends WorldDataProvider {
 
     /**
      * 实际持久化的数据容器。
-     * 保存结构位置、结构连接。
+     * 保存结构位置、结构连接；道路数据已迁移到 RoadShardStorage 的区域分片中，
+     * 这里只读取旧版 road_chunk_data_map 以便首次加载时迁移。
      */
     public static class Data extends SavedData {
         private Records.StructureLocationData structureLocations = new Records.StructureLocationData(new ArrayList<>());
-        private List<Records.StructureConnection> connections = new ArrayList<>();
-        private List<Records.RoadData> roadDataList = new ArrayList<>();
+        private final ConnectionStore connections = new ConnectionStore();
+        private List<Records.RoadData> legacyRoadDataList = new ArrayList<>();
 
         // NBT 字段名
         private static final String KEY_LOCATIONS = "structure_locations";
@@ -54,14 +58,14 @@ public class ForgeWorldDataProvider extends WorldDataProvider {
             if (tag.contains(KEY_CONNECTIONS)) {
                 Tag conTag = tag.get(KEY_CONNECTIONS);
                 DataResult<List<Records.StructureConnection>> res = Codec.list(Records.StructureConnection.CODEC).parse(new Dynamic<>(ops, conTag));
-                res.result().ifPresent(val -> data.connections = val);
+                res.result().ifPresent(data.connections::replaceAll);
             }
 
-            // 道路数据（从 ListTag 读取）
+            // 旧版道路数据（从 ListTag 读取，待迁移到分片）
             if (tag.contains(KEY_ROAD_DATA_LIST)) {
                 Tag roadTag = tag.get(KEY_ROAD_DATA_LIST);
                 DataResult<List<Records.RoadData>> res = Codec.list(Records.RoadData.CODEC).parse(new Dynamic<>(ops, roadTag));
-                res.result().ifPresent(val -> data.roadDataList = val);
+                res.result().ifPresent(val -> data.legacyRoadDataList = new ArrayList<>(val));
             }
 
             return data;
@@ -69,23 +73,38 @@ public class ForgeWorldDataProvider extends WorldDataProvider {
 
         @Override
         public CompoundTag save(CompoundTag tag) {
+            return encode(tag, structureLocations, connections.view());
+        }
+
+        /**
+         * 自动保存时只在主线程拍下快照，编码与写文件交给后台写线程。
+         */
+        @Override
+        public void save(File file) {
+            if (!isDirty()) return;
+            Records.StructureLocationData locations = new Records.StructureLocationData(
+                    structureLocations.structureLocations(), structureLocations.structureInfos());
+            List<Records.StructureConnection> conns = List.copyOf(connections.view());
+            setDirty(false);
+            // 写入失败时重新标记为脏，下次自动保存再写
+            AsyncDataWriter.submit(file, () -> encode(new CompoundTag(), locations, conns), List.of(), callbacks -> setDirty());
+        }
+
+        private static CompoundTag encode(CompoundTag tag,
+                                          Records.StructureLocationData locations,
+                                          List<Records.StructureConnection> conns) {
             DynamicOps<Tag> ops = NbtOps.INSTANCE;
 
             // 结构位置（Record 编码为 CompoundTag）
-            Records.StructureLocationData.CODEC.encodeStart(ops, structureLocations)
+            Records.StructureLocationData.CODEC.encodeStart(ops, locations)
                     .result()
                     .ifPresent(nbt -> tag.put(KEY_LOCATIONS, nbt));
 
             // 结构连接（List 编码为 ListTag）
-            Codec.list(Records.StructureConnection.CODEC).encodeStart(ops, connections)
+            Codec.list(Records.StructureConnection.CODEC).encodeStart(ops, conns)
                     .result()
                     .ifPresent(nbt -> tag.put(KEY_CONNECTIONS, nbt));
 
-            // 道路数据（List 编码为 ListTag）
-            Codec.list(Records.RoadData.CODEC).encodeStart(ops, roadDataList)
-                    .result()
-                    .ifPresent(nbt -> tag.put(KEY_ROAD_DATA_LIST, nbt));
-
             return tag;
         }
 
@@ -99,22 +118,16 @@ public class ForgeWorldDataProvider extends WorldDataProvider {
             setDirty();
         }
 
-        public List<Records.StructureConnection> getConnections() {
+        public ConnectionStore getConnections() {
             return connections;
         }
 
-        public void setConnections(List<Records.StructureConnection> connections) {
-            this.connections = Objects.requireNonNullElseGet(connections, ArrayList::new);
-            setDirty();
-        }
-
-        public List<Records.RoadData> getRoadDataList() {
-            return roadDataList;
-        }
-
-        public void setRoadDataList(List<Records.RoadData> list) {
-            this.roadDataList = Objects.requireNonNullElseGet(list, ArrayList::new);
+        public synchronized List<Records.RoadData> drainLegacyRoadDataList() {
+            if (legacyRoadDataList.isEmpty()) return List.of();
+            List<Records.RoadData> out = legacyRoadDataList;
+            legacyRoadDataList = new ArrayList<>();
             setDirty();
+            return out;
         }
     }
 
@@ -133,22 +146,17 @@ public class ForgeWorldDataProvider extends WorldDataProvider {
     }
 
     @Override
-    public List<Records.StructureConnection> getStructureConnections(ServerLevel level) {
+    protected ConnectionStore getConnectionStore(ServerLevel level) {
         return getOrCreate(level).getConnections();
     }
 
     @Override
-    public void setStructureConnections(ServerLevel level, List<Records.StructureConnection> connections) {
-        getOrCreate(level).setConnections(connections);
-    }
-
-    @Override
-    public List<Records.RoadData> getRoadDataList(ServerLevel level) {
-        return getOrCreate(level).getRoadDataList();
+    protected void markConnectionsDirty(ServerLevel level) {
+        getOrCreate(level).setDirty();
     }
 
     @Override
-    public void setRoadDataList(ServerLevel level, List<Records.RoadData> roadDataList) {
-        getOrCreate(level).setRoadDataList(roadDataList);
+    protected List<Records.RoadData> drainLegacyRoadData(ServerLevel level) {
+        return getOrCreate(level).drainLegacyRoadDataList();
     }
 }
\ No newline at end of file
@@ -4,14 +4,18 @@ import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.level.Level;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.RegisterCommandsEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
 import net.minecraftforge.event.server.ServerStoppingEvent;
 import net.shiroha233.roadweaver.planning.RoadPlanningService;
 import net.shiroha233.roadweaver.generation.RoadGenerationService;
 import net.shiroha233.roadweaver.generation.InitialGenManager;
 import net.shiroha233.roadweaver.persistence.WorldDataProvider;
 import net.shiroha233.roadweaver.achievements.AchievementService;
+import net.shiroha233.roadweaver.command.RoadWeaverCommands;
 
 public final class ServerPlanningHooks {
     private ServerPlanningHooks() {}
@@ -22,6 +26,19 @@ public final class ServerPlanningHooks {
         MinecraftForge.EVENT_BUS.addListener(ServerPlanningHooks::onServerStarted);
         MinecraftForge.EVENT_BUS.addListener(ServerPlanningHooks::onServerTick);
         MinecraftForge.EVENT_BUS.addListener(ServerPlanningHooks::onServerStopping);
+        MinecraftForge.EVENT_BUS.addListener(ServerPlanningHooks::onServerStopped);
+        MinecraftForge.EVENT_BUS.addListener(ServerPlanningHooks::onRegisterCommands);
+        MinecraftForge.EVENT_BUS.addListener(ServerPlanningHooks::onLevelUnload);
+    }
+
+    private static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            RoadGenerationService.onLevelUnload(level);
+        }
+    }
+
+    private static void onRegisterCommands(RegisterCommandsEvent event) {
+        RoadWeaverCommands.register(event.getDispatcher());
     }
 
     private static void onServerStarted(ServerStartedEvent event) {
@@ -61,4 +78,8 @@ public final class ServerPlanningHooks {
     private static void onServerStopping(ServerStoppingEvent event) {
         RoadGenerationService.onServerStopping();
     }
+
+    private static void onServerStopped(ServerStoppedEvent event) {
+        RoadGenerationService.onServerStopped();
+    }
 }